@@ -0,0 +1,40 @@
+package app;
+
+import db.Esquema;
+import services.ArchivadoPedidos;
+
+import java.sql.SQLException;
+
+/**
+ * Herramienta que archiva los pedidos antiguos (ver services.ArchivadoPedidos).
+ *
+ * Se puede lanzar con la aplicación en marcha y cortar cuando se quiera: cada
+ * lote es una transacción corta y la siguiente ejecución sigue donde se quedó.
+ * Conviene programarla de forma periódica (p.ej. una vez al mes).
+ *
+ * Uso: ArchivadoHistorico   (configuración con PG_ARCHIVO_MESES, PG_ARCHIVO_LOTE
+ *                            y PG_ARCHIVO_PAUSA_MS)
+ */
+public class ArchivadoHistorico {
+
+    public static void main(String[] args) {
+        ArchivadoPedidos archivado = ArchivadoPedidos.desdeEntorno();
+
+        try {
+            Esquema.migrar();
+            System.out.println("=== Archivando pedidos anteriores a " + archivado.corte() + " ===");
+
+            long t0 = System.nanoTime();
+            ArchivadoPedidos.Resultado r = archivado.ejecutar(System.out::println);
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+
+            System.out.printf("=== ARCHIVADO TERMINADO: %d pedidos, %d líneas, %d particiones borradas (%d ms) ===%n",
+                    r.pedidos(), r.lineas(), r.particionesBorradas(), ms);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Archivado interrumpido: se seguirá en la próxima ejecución.");
+        }
+    }
+}
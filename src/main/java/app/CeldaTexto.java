@@ -0,0 +1,85 @@
+package app;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.beans.value.WeakChangeListener;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableView;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Celda de texto que lee su valor directamente del objeto de la fila.
+ *
+ * Con un cellValueFactory, la TableView pide a la columna un ObservableValue
+ * cada vez que una celda cambia de fila (al desplazarse, en cada frame), y lo
+ * habitual es crear una SimpleStringProperty nueva por celda y por repintado.
+ * Aquí la columna no tiene cellValueFactory (el item de la celda es siempre
+ * null) y la celda saca el texto de la fila con {@code texto}:
+ *  - no se crea ningún objeto por repintado (salvo lo que cree {@code texto}),
+ *  - si la celda vuelve a pintar la misma fila, no se recalcula nada,
+ *  - setText solo se llama si el texto cambia, así no se invalida el layout
+ *    de la celda sin necesidad.
+ *
+ * Si se modifica en el sitio un objeto que ya se está mostrando (p.ej. llega
+ * su detalle), la celda no se entera sola. Con una {@code generacion}, al
+ * cambiar esta las celdas de la columna vuelven a leer el texto de su fila,
+ * sin crear celdas nuevas como {@code TableView.refresh()}.
+ *
+ * @param <S> tipo de las filas (Cliente)
+ */
+public class CeldaTexto<S> extends TableCell<S, String> {
+
+    private final Function<? super S, String> texto;
+
+    /** Última fila pintada (misma instancia = mismo texto). */
+    private S pintada;
+
+    /** Se guarda en la celda: la generación solo la conoce por referencia débil. */
+    private ChangeListener<Number> alCambiarGeneracion;
+
+    public CeldaTexto(Function<? super S, String> texto) {
+        this.texto = texto;
+    }
+
+    /** Celda que vuelve a leer el texto de su fila cada vez que cambia {@code generacion}. */
+    public CeldaTexto(Function<? super S, String> texto, ObservableValue<Number> generacion) {
+        this(texto);
+        alCambiarGeneracion = (obs, antes, ahora) -> pintar(isEmpty() ? null : filaActual(), true);
+        generacion.addListener(new WeakChangeListener<>(alCambiarGeneracion));
+    }
+
+    /**
+     * Sin cellValueFactory el item es siempre null: sin esto la celda no se
+     * repintaría cuando en su índice se pone otra fila (set en la lista).
+     */
+    @Override
+    protected boolean isItemChanged(String anterior, String nuevo) {
+        return true;
+    }
+
+    @Override
+    protected void updateItem(String item, boolean empty) {
+        super.updateItem(item, empty);
+        pintar(empty ? null : filaActual(), false);
+    }
+
+    /** Pone el texto de {@code fila}; sin {@code forzar}, nada si ya estaba pintada. */
+    private void pintar(S fila, boolean forzar) {
+        if (fila == pintada && fila != null && !forzar) {
+            return;
+        }
+        String nuevo = fila != null ? texto.apply(fila) : null;
+        pintada = fila;   // después: si texto falla, el siguiente repintado lo reintenta
+        if (!Objects.equals(nuevo, getText())) {
+            setText(nuevo);
+        }
+    }
+
+    private S filaActual() {
+        TableView<S> tabla = getTableView();
+        int i = getIndex();
+        return tabla != null && i >= 0 && i < tabla.getItems().size() ? tabla.getItems().get(i) : null;
+    }
+}
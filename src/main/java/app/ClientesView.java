@@ -1,10 +1,15 @@
 package app;
 
 import dao.ClienteDAO;
+import dao.DetalleClienteDAO;
 import model.Cliente;
+import model.DetalleCliente;
+import services.ClientesLocales;
+
+import javafx.application.Platform;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.concurrent.Task;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.Parent;
 import javafx.scene.control.*;
@@ -13,7 +18,18 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -21,13 +37,12 @@ import java.util.stream.Collectors;
  *
  * Versión preparada para trabajar más adelante con DetalleCliente,
  * pero de momento:
- *  - SOLO usa ClienteDAO (insert, findById, findAll).
- *  - La tabla muestra únicamente datos de Cliente (id, nombre, email).
- *  - Los campos de detalle (dirección, teléfono, notas) se muestran en el
- *    formulario, pero aún NO se guardan en BD.
+ *  - SOLO usa ClienteDAO (insert, update, findById, findAll).
+ *  - La tabla y el formulario muestran el detalle (dirección, teléfono, notas),
+ *    cargado de forma perezosa solo para las filas que se pintan, pero
+ *    aún NO se guarda en BD.
  *
- * Cuando exista DetalleClienteDAO, podrás:
- *  - Cargar el detalle al seleccionar un cliente.
+ * Cuando se use DetalleClienteDAO para escribir, podrás:
  *  - Guardar/actualizar detalle junto con el cliente.
  *  - Borrar detalle cuando borres un cliente.
  */
@@ -37,7 +52,13 @@ public class ClientesView {
 
     // Tabla y datos
     private final TableView<Cliente> tabla = new TableView<>();
-    private final ObservableList<Cliente> datos = FXCollections.observableArrayList();
+    // Se refresca por diferencias (clave = id) para no reconstruir toda la tabla
+    private final ListaDiferencial<Cliente, Integer> datos =
+            new ListaDiferencial<>(Cliente::getId, ClientesView::mismoContenido);
+    // Orden de cada columna (las celdas no tienen valor propio con el que ordenar)
+    private final Map<TableColumn<Cliente, ?>, Comparator<Cliente>> ordenPorColumna = new HashMap<>();
+    // Alto fijo de fila, en píxeles (el de una línea de texto con el estilo por defecto)
+    private static final double ALTO_FILA = 24;
 
     // Campos de formulario (Cliente)
     private final TextField txtId = new TextField();
@@ -59,56 +80,137 @@ public class ClientesView {
     private final TextField txtBuscar          = new TextField();
     private final Button    btnBuscar          = new Button("Buscar");
     private final Button    btnLimpiarBusqueda = new Button("Limpiar");
+    private final Button    btnMasResultados   = new Button("Más resultados");
+    private final Label     lblCoincidencia    = new Label();
+
+    // Búsqueda de texto en dirección/notas: resultados por página, fragmento
+    // resaltado de cada cliente encontrado y última coincidencia (para seguir)
+    // junto con el filtro con el que se buscó: el cursor solo vale para ese
+    private static final int PAGINA_TEXTO = 200;
+    private final Map<Integer, String> fragmentos = new HashMap<>();
+    private DetalleClienteDAO.Coincidencia ultimaCoincidencia;
+    private String filtroTexto;
+
+    // Carga del detalle fuera del hilo de JavaFX (las consultas JDBC bloquean):
+    // un solo hilo, así los lotes se piden en orden y de uno en uno
+    private final ExecutorService hiloDetalles = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "cargar-detalles");
+        t.setDaemon(true);
+        return t;
+    });
+    // Peticiones en curso por id de cliente (solo se toca desde el hilo de JavaFX)
+    private final Map<Integer, CompletableFuture<Void>> detallesPedidos = new HashMap<>();
+    // Se incrementa cuando llega detalle nuevo: las celdas de detalle visibles
+    // vuelven a leer su texto (CeldaTexto). Un incremento por tanda de cargas.
+    private final SimpleIntegerProperty generacionDetalle = new SimpleIntegerProperty();
+    private boolean repintarDetallePendiente;
 
     // DAO (acceso a BD)
     private final ClienteDAO clienteDAO = new ClienteDAO();
+    private final DetalleClienteDAO detalleDAO = new DetalleClienteDAO();
+
+    // Instantánea local de clientes para pintar sin esperar a la BD
+    private final ClientesLocales clientesLocales =
+            new ClientesLocales(ClientesLocales.rutaPorDefecto());
 
     public ClientesView() {
         configurarTabla();
         configurarFormulario();
         configurarEventos();
-        recargarDatos(); // al iniciar la vista cargamos los clientes
+        // Los datos NO se cargan aquí: así la ventana se puede enseñar antes (ver cargaInicial)
     }
 
     public Parent getRoot() {
         return root;
     }
 
+    /** Tabla de clientes (para medir su rendimiento, ver DesplazamientoTabla). */
+    TableView<Cliente> getTabla() {
+        return tabla;
+    }
+
+    /**
+     * Muestra estos clientes (refresco por diferencias). Las filas que no cambian
+     * en nombre/email se quedan con la instancia nueva sin avisar a la tabla:
+     * las celdas de detalle visibles se repintan para leer el de la nueva.
+     */
+    void mostrar(List<Cliente> clientes) {
+        datos.actualizar(clientes);
+        generacionDetalle.set(generacionDetalle.get() + 1);
+    }
+
     /* =========================================================
        CONFIGURACIÓN INTERFAZ
        ========================================================= */
 
     private void configurarTabla() {
-        TableColumn<Cliente, Number> colId = new TableColumn<>("ID");
-        colId.setCellValueFactory(c ->
-                new javafx.beans.property.SimpleIntegerProperty(c.getValue().getId()));
-
-        TableColumn<Cliente, String> colNombre = new TableColumn<>("Nombre");
-        colNombre.setCellValueFactory(c ->
-                new javafx.beans.property.SimpleStringProperty(c.getValue().getNombre()));
-
-        TableColumn<Cliente, String> colEmail = new TableColumn<>("Email");
-        colEmail.setCellValueFactory(c ->
-                new javafx.beans.property.SimpleStringProperty(c.getValue().getEmail()));
-
-        // ===== Columnas “placeholder” para DetalleCliente =====
-        TableColumn<Cliente, String> colDireccion = new TableColumn<>("Dirección");
-        colDireccion.setCellValueFactory(c ->
-                new javafx.beans.property.SimpleStringProperty(""));
+        // Las celdas leen el texto directamente del Cliente de su fila (CeldaTexto):
+        // sin cellValueFactory no se crea una propiedad por celda en cada repintado.
+        columna("ID", c -> Integer.toString(c.getId()), Comparator.comparingInt(Cliente::getId));
+        columna("Nombre", Cliente::getNombre);
+        columna("Email", Cliente::getEmail);
+
+        // ===== Columnas de DetalleCliente =====
+        // El detalle se carga al pintarse la fila (por lotes de clientes), así solo
+        // se consultan los detalles de las filas que llegan a verse. La consulta va
+        // en segundo plano: mientras llega, la celda sale vacía.
+        // No se pueden ordenar: habría que cargar el detalle de todas las filas.
+        // Al llegar un lote solo se repintan estas celdas (generacionDetalle).
+        columnaDetalle("Dirección", DetalleCliente::getDireccion);
+        columnaDetalle("Teléfono", DetalleCliente::getTelefono);
+        columnaDetalle("Notas", DetalleCliente::getNotas);
+
+        // Todas las filas miden lo mismo: la tabla no tiene que medir cada celda
+        // nueva al desplazarse para colocar las siguientes
+        tabla.setFixedCellSize(ALTO_FILA);
+
+        // Las columnas no tienen valor de celda que comparar: se ordena con el
+        // comparador de cada columna, y en el sitio (una sola permutación, la
+        // selección se mantiene)
+        tabla.setSortPolicy(t -> {
+            Comparator<Cliente> orden = null;
+            for (TableColumn<Cliente, ?> col : t.getSortOrder()) {
+                Comparator<Cliente> c = ordenPorColumna.get(col);
+                if (c == null) {
+                    continue;
+                }
+                if (col.getSortType() == TableColumn.SortType.DESCENDING) {
+                    c = c.reversed();
+                }
+                orden = orden == null ? c : orden.thenComparing(c);
+            }
+            if (orden != null) {
+                datos.sort(orden);
+            }
+            return true;
+        });
+        tabla.setItems(datos);
 
-        TableColumn<Cliente, String> colTelefono = new TableColumn<>("Teléfono");
-        colTelefono.setCellValueFactory(c ->
-                new javafx.beans.property.SimpleStringProperty(""));
+        root.setCenter(tabla);
+    }
 
-        TableColumn<Cliente, String> colNotas = new TableColumn<>("Notas");
-        colNotas.setCellValueFactory(c ->
-                new javafx.beans.property.SimpleStringProperty(""));
+    private void columna(String titulo, Function<Cliente, String> texto) {
+        columna(titulo, texto, Comparator.comparing(texto, Comparator.nullsFirst(Comparator.naturalOrder())));
+    }
 
-        tabla.getColumns().addAll(colId, colNombre, colEmail,
-                colDireccion, colTelefono, colNotas);
-        tabla.setItems(datos);
+    /** Columna de texto; sin {@code orden} (null) no se puede ordenar. */
+    private void columna(String titulo, Function<Cliente, String> texto, Comparator<Cliente> orden) {
+        TableColumn<Cliente, String> col = new TableColumn<>(titulo);
+        col.setCellFactory(c -> new CeldaTexto<>(texto));
+        if (orden != null) {
+            ordenPorColumna.put(col, orden);
+        } else {
+            col.setSortable(false);
+        }
+        tabla.getColumns().add(col);
+    }
 
-        root.setCenter(tabla);
+    /** Columna de un campo del detalle (sin ordenar), repintada al llegar detalle nuevo. */
+    private void columnaDetalle(String titulo, Function<DetalleCliente, String> campo) {
+        TableColumn<Cliente, String> col = new TableColumn<>(titulo);
+        col.setCellFactory(c -> new CeldaTexto<>(cl -> detalleSinEsperar(cl, campo), generacionDetalle));
+        col.setSortable(false);
+        tabla.getColumns().add(col);
     }
 
     private void configurarFormulario() {
@@ -147,7 +249,9 @@ public class ClientesView {
 
         // Zona de búsqueda
         HBox zonaBusqueda = new HBox(10,
-                new Label("Buscar:"), txtBuscar, btnBuscar, btnLimpiarBusqueda);
+                new Label("Buscar:"), txtBuscar, btnBuscar, btnLimpiarBusqueda,
+                btnMasResultados, lblCoincidencia);
+        btnMasResultados.setDisable(true);
         zonaBusqueda.setPadding(new Insets(10, 0, 10, 0));
 
         BorderPane bottom = new BorderPane();
@@ -168,13 +272,18 @@ public class ClientesView {
                 txtEmail.setText(newSel.getEmail());
                 txtId.setDisable(true); // al editar, de momento, no dejamos cambiar el ID
 
-                // DetalleCliente (cuando exista DetalleClienteDAO se cargará desde BD)
-                // TODO: cuando implementéis DetalleClienteDAO, aquí:
-                //   - detalleDAO.findById(newSel.getId())
-                //   - rellenar txtDireccion, txtTelefono, txtNotas con sus valores
-                txtDireccion.clear();
-                txtTelefono.clear();
-                txtNotas.clear();
+                // DetalleCliente (ya cargado al pintar la fila, o se pide ahora)
+                rellenarDetalle(newSel);
+                if (!newSel.isDetalleCargado()) {
+                    cargarDetalle(newSel).thenRun(() -> Platform.runLater(() -> {
+                        if (tabla.getSelectionModel().getSelectedItem() == newSel) {
+                            rellenarDetalle(newSel);
+                        }
+                    }));
+                }
+
+                // Si salió en la búsqueda de texto, dónde coincide
+                lblCoincidencia.setText(fragmentos.getOrDefault(newSel.getId(), ""));
             }
         });
 
@@ -191,6 +300,13 @@ public class ClientesView {
 
         btnBuscar.setOnAction(e -> buscarClientesEnBBDD());
 
+        btnMasResultados.setOnAction(e -> masResultadosDeTexto());
+        // Con otro texto en la caja, "Más resultados" seguiría la búsqueda
+        // anterior: se desactiva hasta que se vuelva a buscar
+        txtBuscar.textProperty().addListener((obs, antes, ahora) ->
+                btnMasResultados.setDisable(ultimaCoincidencia == null
+                        || !ahora.trim().equals(filtroTexto)));
+
         btnLimpiarBusqueda.setOnAction(e -> {
             txtBuscar.clear();
             recargarDatos();
@@ -201,13 +317,54 @@ public class ClientesView {
        LÓGICA DE NEGOCIO (usando ClienteDAO actual)
        ========================================================= */
 
+    /**
+     * Carga de datos al arrancar, sin bloquear la ventana (llamar con ella ya visible):
+     *  - se pinta al momento lo que haya en la instantánea local,
+     *  - en segundo plano, cuando la BD esté preparada (bdLista), se piden solo
+     *    los cambios desde entonces, se reescribe la instantánea y se aplica el
+     *    resultado a la tabla.
+     *
+     * @return se completa al terminar la sincronización (haya ido bien o no)
+     */
+    public CompletableFuture<Void> cargaInicial(CompletableFuture<?> bdLista) {
+        mostrar(clientesLocales.cargarLocal());
+
+        CompletableFuture<Void> terminada = new CompletableFuture<>();
+        Task<List<Cliente>> sincronizacion = new Task<>() {
+            @Override
+            protected List<Cliente> call() throws Exception {
+                bdLista.exceptionally(ex -> null).join();
+                return clientesLocales.sincronizar();
+            }
+        };
+        sincronizacion.setOnSucceeded(e -> {
+            // Si el usuario ya está buscando, no le pisamos los resultados
+            if (txtBuscar.getText().isBlank()) {
+                mostrar(sincronizacion.getValue());
+            }
+            terminada.complete(null);
+        });
+        sincronizacion.setOnFailed(e -> {
+            terminada.complete(null);   // antes del diálogo, que bloquea hasta que se cierre
+            Throwable ex = sincronizacion.getException();
+            mostrarError("Error al sincronizar clientes",
+                    ex instanceof Exception exc ? exc : new Exception(ex));
+        });
+
+        Thread hilo = new Thread(sincronizacion, "sincronizar-clientes");
+        hilo.setDaemon(true);
+        hilo.start();
+        return terminada;
+    }
+
     /**
      * Carga todos los clientes desde la BD usando ClienteDAO.findAll()
      */
     private void recargarDatos() {
+        olvidarBusquedaTexto();
         try {
             List<Cliente> lista = clienteDAO.findAll();
-            datos.setAll(lista);
+            mostrar(lista);
         } catch (SQLException e) {
             mostrarError("Error al cargar clientes", e);
         }
@@ -239,13 +396,20 @@ public class ClientesView {
                     )
                     .collect(Collectors.toList());
 
-            datos.setAll(filtrados);
+            mostrar(filtrados);
         } catch (SQLException e) {
             mostrarError("Error al buscar clientes", e);
         }
     }
 
 
+    /**
+     * Búsqueda universal en la BD:
+     *  - primero las coincidencias en dirección y notas (búsqueda de texto con
+     *    índice, de mejor a peor rango; de PAGINA_TEXTO en PAGINA_TEXTO con
+     *    "Más resultados"),
+     *  - después las de id, nombre o email (ClienteDAO.search) que falten.
+     */
     private void buscarClientesEnBBDD(){
         String filtro = txtBuscar.getText().trim();
 
@@ -254,9 +418,18 @@ public class ClientesView {
             return;
         }
 
+        olvidarBusquedaTexto();
         try {
-            List<Cliente> lista = clienteDAO.search(filtro);
-            datos.setAll(lista);
+            List<Cliente> lista = paginaDeTexto(filtro);
+            Set<Integer> vistos = new HashSet<>();
+            lista.forEach(c -> vistos.add(c.getId()));
+
+            for (Cliente c : clienteDAO.search(filtro)) {
+                if (vistos.add(c.getId())) {
+                    lista.add(c);
+                }
+            }
+            mostrar(lista);
 
         } catch (SQLException e){
             mostrarError("Error al buscar", e);
@@ -264,6 +437,66 @@ public class ClientesView {
 
     }
 
+    /** Añade a la tabla la siguiente página de la búsqueda de texto (con su filtro, no el de la caja). */
+    private void masResultadosDeTexto() {
+        String filtro = filtroTexto;
+        if (filtro == null || ultimaCoincidencia == null) {
+            return;
+        }
+
+        try {
+            List<Cliente> lista = new ArrayList<>(datos);
+            Set<Integer> vistos = new HashSet<>();
+            lista.forEach(c -> vistos.add(c.getId()));
+
+            for (Cliente c : paginaDeTexto(filtro)) {
+                if (vistos.add(c.getId())) {
+                    lista.add(c);
+                }
+            }
+            mostrar(lista);
+
+        } catch (SQLException e) {
+            mostrarError("Error al buscar", e);
+        }
+    }
+
+    /**
+     * Siguiente página de la búsqueda de texto (la primera si no hay
+     * ultimaCoincidencia): los clientes, en orden de rango, y sus fragmentos.
+     */
+    private List<Cliente> paginaDeTexto(String filtro) throws SQLException {
+        List<DetalleClienteDAO.Coincidencia> pagina =
+                detalleDAO.buscarTexto(filtro, ultimaCoincidencia, PAGINA_TEXTO);
+
+        List<Integer> ids = new ArrayList<>(pagina.size());
+        pagina.forEach(co -> ids.add(co.id()));
+        Map<Integer, Cliente> clientes = clienteDAO.findByIds(ids);
+
+        List<Cliente> out = new ArrayList<>(pagina.size());
+        for (DetalleClienteDAO.Coincidencia co : pagina) {
+            Cliente c = clientes.get(co.id());
+            if (c != null) {
+                out.add(c);
+                fragmentos.put(c.getId(), co.fragmento());
+            }
+        }
+
+        // Página completa → puede haber más
+        ultimaCoincidencia = pagina.size() == PAGINA_TEXTO ? pagina.get(pagina.size() - 1) : null;
+        filtroTexto = filtro;
+        btnMasResultados.setDisable(ultimaCoincidencia == null);
+        return out;
+    }
+
+    private void olvidarBusquedaTexto() {
+        fragmentos.clear();
+        ultimaCoincidencia = null;
+        filtroTexto = null;
+        btnMasResultados.setDisable(true);
+        lblCoincidencia.setText("");
+    }
+
     private void limpiarFormulario() {
         txtId.clear();
         txtNombre.clear();
@@ -277,8 +510,11 @@ public class ClientesView {
 
     /**
      * Guardar cliente:
+     *  - Si se está editando el cliente seleccionado → UPDATE optimista con
+     *    ClienteDAO.update(): si otro usuario lo cambió mientras tanto, se avisa
+     *    y se recargan los datos (no se pisa su cambio).
      *  - Si no existe en la BD → INSERT usando ClienteDAO.insert()
-     *  - Si existe → por ahora solo muestra un aviso.
+     *  - Si existe pero no es el seleccionado → aviso de ID repetido.
      *
      * NOTA:
      *  - Los datos de detalle (dirección, teléfono, notas) todavía NO se guardan.
@@ -312,10 +548,22 @@ public class ClientesView {
         //   id, txtDireccion.getText(), txtTelefono.getText(), txtNotas.getText()
         // y pasarlo a un ClienteService.crearClienteConDetalle(...)
 
-        try {
-            Cliente existente = clienteDAO.findById(id);
+        // Cliente que se está editando: su versión es la que el usuario tenía en pantalla
+        Cliente editado = tabla.getSelectionModel().getSelectedItem();
 
-            if (existente == null) {
+        try {
+            if (editado != null && editado.getId() == id) {
+                c.setVersion(editado.getVersion());
+
+                if (clienteDAO.update(c)) {
+                    mostrarInfo("Actualizado", "Cliente actualizado correctamente.");
+                } else {
+                    mostrarAlerta("Cliente modificado por otro usuario",
+                            "El cliente ha cambiado (o se ha borrado) mientras lo editabas.\n" +
+                                    "Se recargan los datos: revisa los cambios y vuelve a guardar.");
+                }
+
+            } else if (clienteDAO.findById(id) == null) {
                 // No existe → INSERT real
                 clienteDAO.insert(c);
 
@@ -325,13 +573,11 @@ public class ClientesView {
 
                 mostrarInfo("Insertado", "Cliente creado correctamente.");
             } else {
-                // Ya existe → aquí en el futuro iría un UPDATE.
-                // TODO: cuando implementéis ClienteDAO.update(Cliente),
-                //  y DetalleClienteDAO.update(DetalleCliente),
-                //  llamad aquí a esos métodos (idealmente a través de ClienteService).
-                mostrarAlerta("Actualizar pendiente",
-                        "El cliente ya existe.\n" +
-                                "Más adelante aquí haremos UPDATE desde el DAO/Service.");
+                // Ya existe y no es el que se está editando → no lo sobrescribimos.
+                mostrarAlerta("ID repetido",
+                        "Ya existe un cliente con ese ID.\n" +
+                                "Selecciónalo en la tabla para modificarlo.");
+                return;
             }
 
             recargarDatos();
@@ -393,6 +639,79 @@ public class ClientesView {
         */
     }
 
+    /** Campos de detalle del formulario ("" mientras el detalle no esté cargado). */
+    private void rellenarDetalle(Cliente c) {
+        txtDireccion.setText(detalleSinEsperar(c, DetalleCliente::getDireccion));
+        txtTelefono.setText(detalleSinEsperar(c, DetalleCliente::getTelefono));
+        txtNotas.setText(detalleSinEsperar(c, DetalleCliente::getNotas));
+    }
+
+    /**
+     * Un campo del detalle sin bloquear el hilo de JavaFX: si el lote del
+     * cliente aún no está en memoria, devuelve "" y lo pide en segundo plano;
+     * al llegar se repintan las celdas de detalle.
+     */
+    private String detalleSinEsperar(Cliente c, Function<DetalleCliente, String> campo) {
+        if (c.isDetalleCargado()) {
+            return detalle(c, campo);
+        }
+        cargarDetalle(c).whenComplete((r, ex) -> Platform.runLater(() -> {
+            if (ex != null) {
+                // Las celdas se quedan vacías; se reintenta al recargar la tabla
+                System.err.println("No se pudo cargar el detalle del cliente " + c.getId()
+                        + ": " + ex.getMessage());
+            } else {
+                repintarDetalle();
+            }
+        }));
+        return "";
+    }
+
+    /**
+     * Incrementa generacionDetalle una vez por tanda: las peticiones de un lote
+     * acaban casi a la vez y cada una encola su aviso; el incremento va detrás
+     * de todos ellos.
+     */
+    private void repintarDetalle() {
+        if (!repintarDetallePendiente) {
+            repintarDetallePendiente = true;
+            Platform.runLater(() -> {
+                repintarDetallePendiente = false;
+                generacionDetalle.set(generacionDetalle.get() + 1);
+            });
+        }
+    }
+
+    /** Carga (en el hilo de detalles) el lote del cliente; una sola petición por cliente a la vez. */
+    private CompletableFuture<Void> cargarDetalle(Cliente c) {
+        return detallesPedidos.computeIfAbsent(c.getId(), id -> {
+            CompletableFuture<Void> carga = CompletableFuture.runAsync(c::getDetalle, hiloDetalles);
+            carga.whenComplete((r, ex) -> Platform.runLater(() -> detallesPedidos.remove(id)));
+            return carga;
+        });
+    }
+
+    /** Un campo del detalle del cliente, o "" si no tiene detalle. */
+    private static String detalle(Cliente c, Function<DetalleCliente, String> campo) {
+        DetalleCliente d = c.getDetalle();
+        String valor = d != null ? campo.apply(d) : null;
+        return valor != null ? valor : "";
+    }
+
+    /**
+     * Dos clientes con el mismo id se pintan igual si coinciden en nombre y email.
+     * Se usa para que un refresco solo reemplace las filas que realmente cambian.
+     * También se compara la versión: la fila debe guardar la última leída para
+     * que un UPDATE posterior no dé un falso conflicto.
+     * El detalle no se compara (obligaría a cargarlo de todas las filas): aunque
+     * no cambien, las filas pasan a la instancia nueva (ver ListaDiferencial).
+     */
+    private static boolean mismoContenido(Cliente a, Cliente b) {
+        return a.getVersion() == b.getVersion()
+                && Objects.equals(a.getNombre(), b.getNombre())
+                && Objects.equals(a.getEmail(), b.getEmail());
+    }
+
     /* =========================================================
        DIÁLOGOS AUXILIARES
        ========================================================= */
@@ -0,0 +1,53 @@
+package app;
+
+import db.Carga;
+import db.Db;
+import db.Esquema;
+import services.ExportacionColumnar;
+import services.ImportacionColumnar;
+
+import java.nio.file.Path;
+
+/**
+ * Copia completa de datos entre entornos usando el formato columnar.
+ *
+ * Uso:
+ *   ClonadoDatos exportar fichero.lvcol
+ *   ClonadoDatos importar fichero.lvcol [--vaciar]
+ *
+ * La BD de origen/destino es la configurada con PG_HOST, PG_DB, etc.
+ */
+public class ClonadoDatos {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Uso: ClonadoDatos exportar|importar <fichero> [--vaciar]");
+            return;
+        }
+
+        Path fichero = Path.of(args[1]);
+        long inicio = System.nanoTime();
+
+        // Exportar es una lectura masiva (INFORME); importar, una escritura masiva (LOTE)
+        Carga clase = args[0].equals("exportar") ? Carga.INFORME : Carga.LOTE;
+
+        try (Carga.Ambito a = Db.usar(clase)) {
+            long filas;
+            if (args[0].equals("exportar")) {
+                filas = new ExportacionColumnar().exportar(fichero);
+            } else if (args[0].equals("importar")) {
+                boolean vaciar = args.length > 2 && args[2].equals("--vaciar");
+                Esquema.migrar();   // la BD destino puede estar recién creada
+                filas = new ImportacionColumnar().importar(fichero, vaciar);
+            } else {
+                System.out.println("Operación desconocida: " + args[0]);
+                return;
+            }
+
+            long ms = (System.nanoTime() - inicio) / 1_000_000;
+            System.out.printf("=== %s: %d filas en %d ms ===%n", args[0], filas, ms);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package app;
+
+import dao.Mapeadores;
+import db.Carga;
+import db.Db;
+import db.FilaMapper;
+import model.Cliente;
+import model.DetalleCliente;
+import services.GeneradorDatos;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * Mide el coste por fila de convertir un ResultSet de clientes con detalle
+ * en objetos Cliente:
+ *  - por nombre: rs.getInt("id"), rs.getString("nombre")... en cada fila
+ *    (como hacían los mapRow de los DAOs antes de Mapeadores),
+ *  - por índice: lo mismo con los índices resueltos una vez (findColumn),
+ *  - Mapeadores.CLIENTE_CON_DETALLE, el que usan los DAOs.
+ *
+ * Solo se mide el recorrido del ResultSet ya leído, no la consulta.
+ *
+ *  - Sin argumentos: N filas generadas (GeneradorDatos) en un CachedRowSet
+ *    del JDK, sin BD. Su búsqueda por nombre es más lenta que la del driver
+ *    de PostgreSQL, así que la diferencia sale algo mayor que con la BD.
+ *  - "bd": la consulta de ClienteDAO.findAllConDetalle sobre la BD, leída
+ *    entera en memoria (autocommit, sin cursor) y recorrida con cada variante.
+ *
+ * Uso: CosteMapeo [filas=200000]
+ *      CosteMapeo bd
+ */
+public class CosteMapeo {
+
+    private static final int RONDAS_CALENTAMIENTO = 5;
+    private static final int RONDAS = 10;
+
+    private static final String SELECT_CON_DETALLE_SQL = """
+            SELECT c.id, c.nombre, c.email, c.version,
+                   d.id AS detalle_id, d.direccion, d.telefono, d.notas
+            FROM cliente c
+            LEFT JOIN detalle_cliente d ON d.id = c.id
+            ORDER BY c.id
+            """;
+
+    /** Recorre el ResultSet entero y devuelve las filas leídas. */
+    private interface Variante {
+        int recorrer(ResultSet rs) throws SQLException;
+    }
+
+    /** Suma de ids de lo mapeado: así el JIT no puede descartar el trabajo. */
+    private static long sumidero;
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length > 0 && args[0].equals("bd")) {
+            try (Carga.Ambito a = Db.usar(Carga.INFORME);
+                 Connection con = Db.getConnection();
+                 Statement st = con.createStatement();
+                 ResultSet rs = st.executeQuery(SELECT_CON_DETALLE_SQL)) {
+                medir(rs, "BD");
+            }
+        } else {
+            int n = args.length > 0 ? Integer.parseInt(args[0].replace("filas=", "")) : 200_000;
+            try (CachedRowSet rs = generar(n)) {
+                medir(rs, "CachedRowSet");
+            }
+        }
+    }
+
+    private static void medir(ResultSet rs, String origen) throws SQLException {
+        int filas = porNombre(rs);
+        System.out.printf("=== Mapeo de %,d clientes con detalle (%s) ===%n", filas, origen);
+        double antes = medir(rs, filas, "por nombre en cada fila", CosteMapeo::porNombre, 0);
+        medir(rs, filas, "por índice (a mano)", CosteMapeo::porIndiceSinCompartir, antes);
+        medir(rs, filas, "Mapeadores (el de los DAOs)", CosteMapeo::porIndice, antes);
+    }
+
+    /** ns por fila (mediana de las rondas). */
+    private static double medir(ResultSet rs, int filas, String variante, Variante v, double referencia)
+            throws SQLException {
+        for (int i = 0; i < RONDAS_CALENTAMIENTO; i++) {
+            v.recorrer(rs);
+        }
+        long[] tiempos = new long[RONDAS];
+        for (int i = 0; i < RONDAS; i++) {
+            long t0 = System.nanoTime();
+            v.recorrer(rs);
+            tiempos[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(tiempos);
+        double nsFila = (double) tiempos[RONDAS / 2] / Math.max(1, filas);
+
+        System.out.printf("%-32s %8.1f ns/fila%s%n", variante, nsFila,
+                referencia > 0 ? "  (%+.0f%%)".formatted(100 * (nsFila - referencia) / referencia) : "");
+        return nsFila;
+    }
+
+    /** Réplica de los mapRow anteriores: búsqueda por nombre en cada get. */
+    private static int porNombre(ResultSet rs) throws SQLException {
+        rs.beforeFirst();
+        int filas = 0;
+        while (rs.next()) {
+            Cliente c = new Cliente(rs.getInt("id"), rs.getString("nombre"), rs.getString("email"));
+            c.setVersion(rs.getInt("version"));
+            rs.getInt("detalle_id");
+            if (!rs.wasNull()) {
+                c.setDetalle(new DetalleCliente(c.getId(), rs.getString("direccion"),
+                        rs.getString("telefono"), rs.getString("notas")));
+            }
+            sumidero += c.getId();
+            filas++;
+        }
+        return filas;
+    }
+
+    /** Por índice escrito a mano: referencia de lo mínimo que cuesta la fila. */
+    private static int porIndiceSinCompartir(ResultSet rs) throws SQLException {
+        rs.beforeFirst();
+        int id = rs.findColumn("id");
+        int nombre = rs.findColumn("nombre");
+        int email = rs.findColumn("email");
+        int version = rs.findColumn("version");
+        int detalleId = rs.findColumn("detalle_id");
+        int direccion = rs.findColumn("direccion");
+        int telefono = rs.findColumn("telefono");
+        int notas = rs.findColumn("notas");
+        int filas = 0;
+        while (rs.next()) {
+            Cliente c = new Cliente(rs.getInt(id), rs.getString(nombre), rs.getString(email));
+            c.setVersion(rs.getInt(version));
+            rs.getInt(detalleId);
+            if (!rs.wasNull()) {
+                c.setDetalle(new DetalleCliente(c.getId(), rs.getString(direccion),
+                        rs.getString(telefono), rs.getString(notas)));
+            }
+            sumidero += c.getId();
+            filas++;
+        }
+        return filas;
+    }
+
+    private static int porIndice(ResultSet rs) throws SQLException {
+        rs.beforeFirst();
+        FilaMapper<Cliente> m = Mapeadores.CLIENTE_CON_DETALLE.para(rs);
+        int filas = 0;
+        while (rs.next()) {
+            sumidero += m.map(rs).getId();
+            filas++;
+        }
+        return filas;
+    }
+
+    /** N clientes (1 de cada 10 sin detalle) con las columnas de la consulta. */
+    private static CachedRowSet generar(int n) throws SQLException {
+        String[] columnas = {"id", "nombre", "email", "version", "detalle_id", "direccion", "telefono", "notas"};
+        int[] tipos = {Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR};
+        RowSetMetaDataImpl md = new RowSetMetaDataImpl();
+        md.setColumnCount(columnas.length);
+        for (int i = 0; i < columnas.length; i++) {
+            md.setColumnName(i + 1, columnas[i]);
+            md.setColumnType(i + 1, tipos[i]);
+            md.setNullable(i + 1, ResultSetMetaData.columnNullable);
+        }
+
+        CachedRowSet rs = RowSetProvider.newFactory().createCachedRowSet();
+        rs.setMetaData(md);
+        GeneradorDatos gen = new GeneradorDatos(42);
+        for (int id = 1; id <= n; id++) {
+            Cliente c = gen.cliente(id);
+            rs.moveToInsertRow();
+            rs.updateInt(1, id);
+            rs.updateString(2, c.getNombre());
+            rs.updateString(3, c.getEmail());
+            rs.updateInt(4, 1);
+            if (id % 10 != 0) {
+                DetalleCliente d = gen.detalle(id);
+                rs.updateInt(5, id);
+                rs.updateString(6, d.getDireccion());
+                rs.updateString(7, d.getTelefono());
+                rs.updateString(8, d.getNotas());
+            } else {
+                rs.updateNull(5);
+                rs.updateNull(6);
+                rs.updateNull(7);
+                rs.updateNull(8);
+            }
+            rs.insertRow();
+            rs.moveToCurrentRow();
+        }
+        return rs;
+    }
+}
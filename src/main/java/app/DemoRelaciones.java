@@ -30,6 +30,8 @@ import java.util.List;
  *
  * Aunque en este código solo estás trabajando con Cliente,
  * la idea es extender la demo para incluir el resto de relaciones.
+ *
+ * Para probar con volúmenes grandes y carga concurrente, ver SimuladorCarga.
  */
 public class DemoRelaciones {
 
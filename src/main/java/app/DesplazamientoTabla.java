@@ -0,0 +1,242 @@
+package app;
+
+import model.CargaPorLotes;
+import model.Cliente;
+import org.HdrHistogram.Histogram;
+import services.GeneradorDatos;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.stage.Stage;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el desplazamiento de la tabla de clientes con muchas filas, sin BD.
+ *
+ * Abre la ClientesView real con N clientes sintéticos (GeneradorDatos) y la
+ * desplaza sola un número fijo de píxeles por frame, hasta el final y vuelta.
+ * Como en los listados de ClienteDAO, el detalle no viene puesto: se carga
+ * por lotes al pintarse las filas (CargaPorLotes), con una espera de L ms por
+ * lote en lugar de la consulta. Así se mide el camino real: celdas vacías,
+ * carga en segundo plano y repintado de las celdas de detalle al llegar.
+ * Tras unos frames de calentamiento mide durante S segundos:
+ *  - intervalo entre frames (pulsos de JavaFX),
+ *  - trabajo por frame: desde la animación hasta acabar el layout, que es
+ *    donde la tabla recoloca y repinta sus celdas,
+ *  - bytes reservados por el hilo de JavaFX (por frame y por segundo),
+ *  - colecciones y tiempo de GC,
+ *  - lotes de detalle cargados.
+ *
+ * Por defecto JavaFX va sincronizado con la pantalla (60 fps como mucho);
+ * para ver el coste real: -Dprism.vsync=false -Djavafx.animation.fullspeed=true
+ *
+ * Uso: DesplazamientoTabla [filas=1000000] [segundos=10] [px=120] [latencia=20]   (conviene -Xmx2g)
+ */
+public class DesplazamientoTabla extends Application {
+
+    private static final int FRAMES_CALENTAMIENTO = 120;
+    private static final long MAX_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** Como CargaRelacionesClientes. */
+    private static final int TAMANO_LOTE = 256;
+
+    @Override
+    public void start(Stage stage) {
+        List<String> args = getParameters().getRaw();
+        int filas = (int) argumento(args, 0, "filas=", 1_000_000);
+        long segundos = argumento(args, 1, "segundos=", 10);
+        double px = argumento(args, 2, "px=", 120);
+        long latencia = argumento(args, 3, "latencia=", 20);
+
+        long t0 = System.nanoTime();
+        ClientesView vista = new ClientesView();
+        List<Cliente> clientes = generar(filas);
+        CargaSimulada carga = new CargaSimulada(clientes, latencia);
+        carga.enganchar();
+        vista.mostrar(clientes);
+        System.out.printf("%,d clientes generados en %d ms%n", filas, (System.nanoTime() - t0) / 1_000_000);
+
+        Scene scene = new Scene(vista.getRoot(), 900, 600);
+        stage.setTitle("Desplazamiento de la tabla de clientes");
+        stage.setScene(scene);
+
+        Medidor medidor = new Medidor(vista.getTabla(), carga, filas, TimeUnit.SECONDS.toNanos(segundos), px);
+        scene.addPostLayoutPulseListener(medidor::layoutHecho);
+        stage.show();
+        medidor.start();
+    }
+
+    /** Clientes 1..n sin detalle (lo pone CargaSimulada), ordenados por id. */
+    private static List<Cliente> generar(int n) {
+        GeneradorDatos gen = new GeneradorDatos(42);
+        List<Cliente> lista = new ArrayList<>(n);
+        for (int id = 1; id <= n; id++) {
+            lista.add(gen.cliente(id));
+        }
+        return lista;
+    }
+
+    private static long argumento(List<String> args, int i, String prefijo, long porDefecto) {
+        return args.size() > i ? Long.parseLong(args.get(i).replace(prefijo, "")) : porDefecto;
+    }
+
+    /**
+     * Carga de detalle sin BD: espera {@code latencia} ms por lote (la consulta)
+     * y genera el detalle de cada cliente. Solo la llama el hilo de detalles de
+     * ClientesView, así que el generador no se comparte.
+     */
+    private static final class CargaSimulada extends CargaPorLotes {
+
+        private final GeneradorDatos gen = new GeneradorDatos(43);
+        private final long latencia;
+        private volatile int lotes;
+
+        CargaSimulada(List<Cliente> clientes, long latencia) {
+            super(clientes, TAMANO_LOTE);
+            this.latencia = latencia;
+        }
+
+        @Override
+        protected void cargarDetalles(List<Cliente> lote) throws SQLException {
+            try {
+                Thread.sleep(latencia);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Carga interrumpida", e);
+            }
+            for (Cliente c : lote) {
+                c.setDetalle(gen.detalle(c.getId()));
+            }
+            lotes++;
+        }
+
+        @Override
+        protected void cargarPedidos(List<Cliente> lote) {
+            // La tabla no pinta pedidos
+        }
+    }
+
+    /** Desplaza la tabla en cada pulso y toma las medidas. */
+    private static final class Medidor extends AnimationTimer {
+
+        private final TableView<Cliente> tabla;
+        private final CargaSimulada carga;
+        private final int filas;
+        private final long duracion;
+        private double paso;
+
+        private final Histogram intervalos = new Histogram(MAX_NANOS, 3);
+        private final Histogram trabajo = new Histogram(MAX_NANOS, 3);
+        private final com.sun.management.ThreadMXBean hilos =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        private VirtualFlow<?> flujo;
+        private int frames;
+        private long anterior;
+        private long inicioFrame;
+        private long inicio;
+        private long bytesInicio;
+        private long gcInicio;
+        private long gcMsInicio;
+
+        Medidor(TableView<Cliente> tabla, CargaSimulada carga, int filas, long duracion, double paso) {
+            this.tabla = tabla;
+            this.carga = carga;
+            this.filas = filas;
+            this.duracion = duracion;
+            this.paso = paso;
+        }
+
+        @Override
+        public void handle(long ahora) {
+            if (flujo == null) {
+                // El VirtualFlow lo crea el skin de la tabla en el primer pulso
+                flujo = (VirtualFlow<?>) tabla.lookup(".virtual-flow");
+                return;
+            }
+
+            frames++;
+            if (frames == FRAMES_CALENTAMIENTO) {
+                inicio = ahora;
+                bytesInicio = hilos.getCurrentThreadAllocatedBytes();
+                gcInicio = colecciones();
+                gcMsInicio = tiempoGc();
+            } else if (frames > FRAMES_CALENTAMIENTO) {
+                intervalos.recordValue(Math.min(ahora - anterior, MAX_NANOS));
+                if (ahora - inicio >= duracion) {
+                    stop();
+                    informar(ahora - inicio);
+                    Platform.exit();
+                    return;
+                }
+            }
+            anterior = ahora;
+            inicioFrame = System.nanoTime();
+
+            // Al llegar a un extremo no se mueve nada: se cambia de sentido
+            if (flujo.scrollPixels(paso) == 0) {
+                paso = -paso;
+            }
+        }
+
+        /** Tras el layout del pulso: la tabla ya ha colocado sus celdas. */
+        void layoutHecho() {
+            if (inicioFrame != 0 && frames > FRAMES_CALENTAMIENTO) {
+                trabajo.recordValue(Math.min(System.nanoTime() - inicioFrame, MAX_NANOS));
+            }
+            inicioFrame = 0;
+        }
+
+        private void informar(long nanos) {
+            long bytes = hilos.getCurrentThreadAllocatedBytes() - bytesInicio;
+            long medidos = intervalos.getTotalCount();
+            double segundos = nanos / 1e9;
+
+            System.out.printf("=== Desplazamiento de %,d filas (%.0f px/frame, %.1f s) ===%n",
+                    filas, Math.abs(paso), segundos);
+            System.out.printf("Frames: %d (%.1f fps)%n", medidos, medidos / segundos);
+            imprimir("Intervalo entre frames", intervalos);
+            imprimir("Trabajo hasta el layout", trabajo);
+            System.out.printf("Reservado en el hilo FX: %.1f KB/frame, %.2f MB/s%n",
+                    bytes / 1024.0 / Math.max(1, medidos), bytes / 1048576.0 / segundos);
+            System.out.printf("GC: %d colecciones, %d ms%n",
+                    colecciones() - gcInicio, tiempoGc() - gcMsInicio);
+            System.out.printf("Lotes de detalle cargados: %d de %d clientes%n", carga.lotes, TAMANO_LOTE);
+        }
+
+        private static void imprimir(String titulo, Histogram h) {
+            System.out.printf("%-24s p50 %6.2f ms  p90 %6.2f ms  p99 %6.2f ms  máx %6.2f ms%n", titulo + ":",
+                    h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(90) / 1e6,
+                    h.getValueAtPercentile(99) / 1e6, h.getMaxValue() / 1e6);
+        }
+
+        private static long colecciones() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, gc.getCollectionCount());
+            }
+            return total;
+        }
+
+        private static long tiempoGc() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, gc.getCollectionTime());
+            }
+            return total;
+        }
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
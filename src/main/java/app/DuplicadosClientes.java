@@ -0,0 +1,157 @@
+package app;
+
+import dao.ClienteDAO;
+import db.Carga;
+import db.Db;
+import model.Cliente;
+import model.DetalleCliente;
+import services.DeduplicacionClientes;
+import services.GeneradorDatos;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Herramienta de detección de clientes duplicados (ver services.DeduplicacionClientes).
+ *
+ *  - Sin argumentos: recorre los clientes de la BD (con su detalle, en
+ *    streaming) y muestra los grupos de posibles duplicados.
+ *  - "sintetico N": no usa la BD. Genera N clientes con GeneradorDatos, mete
+ *    un 2% de copias alteradas (sin acentos, apellidos cambiados de orden,
+ *    variantes del email) y mide el tiempo, cuántas copias encuentra
+ *    (exhaustividad) y cuántos de los grupos son de verdad copias (precisión).
+ *
+ * Uso: DuplicadosClientes [umbral]
+ *      DuplicadosClientes sintetico N [umbral]
+ */
+public class DuplicadosClientes {
+
+    private static final int GRUPOS_A_MOSTRAR = 20;
+
+    public static void main(String[] args) {
+        boolean sintetico = args.length > 0 && args[0].equals("sintetico");
+        int siguiente = sintetico ? 2 : 0;
+        double umbral = args.length > siguiente ? Double.parseDouble(args[siguiente]) : 0.8;
+        DeduplicacionClientes dedup = new DeduplicacionClientes(umbral);
+
+        long t0 = System.nanoTime();
+        Map<Integer, Integer> copias = new HashMap<>();   // id copia → id original
+        if (sintetico) {
+            generar(dedup, Integer.parseInt(args[1]), copias);
+        } else {
+            try (Carga.Ambito a = Db.usar(Carga.INFORME)) {
+                new ClienteDAO().recorrerConDetalle(dedup::anadir);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        long t1 = System.nanoTime();
+        List<DeduplicacionClientes.Grupo> grupos = dedup.agrupar();
+        long t2 = System.nanoTime();
+
+        System.out.printf("Clientes: %d (lectura %d ms), grupos de duplicados: %d (%d ms, %d núcleos)%n",
+                dedup.tamano(), (t1 - t0) / 1_000_000, grupos.size(), (t2 - t1) / 1_000_000,
+                Runtime.getRuntime().availableProcessors());
+
+        System.out.println("=== GRUPOS (mejores " + GRUPOS_A_MOSTRAR + ") ===");
+        for (DeduplicacionClientes.Grupo g : grupos.subList(0, Math.min(GRUPOS_A_MOSTRAR, grupos.size()))) {
+            System.out.printf("  %.3f  %s%n", g.puntuacion(), Arrays.toString(g.ids()));
+        }
+
+        if (sintetico) {
+            informarAcierto(grupos, copias);
+        }
+    }
+
+    /** N clientes con detalle, más una copia alterada de 1 de cada 50. */
+    private static void generar(DeduplicacionClientes dedup, int n, Map<Integer, Integer> copias) {
+        GeneradorDatos gen = new GeneradorDatos(42);
+        Random rnd = new Random(7);
+        int siguienteId = n + 1;
+
+        for (int id = 1; id <= n; id++) {
+            Cliente c = gen.cliente(id);
+            c.setDetalle(gen.detalle(id));
+            dedup.anadir(c);
+
+            if (rnd.nextInt(50) == 0) {
+                Cliente copia = alterar(c, siguienteId, rnd);
+                dedup.anadir(copia);
+                copias.put(siguienteId++, id);
+            }
+        }
+    }
+
+    private static Cliente alterar(Cliente c, int id, Random rnd) {
+        String nombre = c.getNombre();
+        String email = c.getEmail();
+        switch (rnd.nextInt(4)) {
+            case 0 -> nombre = Normalizer.normalize(nombre, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+            case 1 -> {
+                String[] p = nombre.split(" ");
+                nombre = p.length == 3 ? p[1] + " " + p[2] + ", " + p[0] : nombre;
+            }
+            case 2 -> email = email.replace("@", "+web@");
+            default -> email = email.toUpperCase();
+        }
+        if (rnd.nextBoolean()) {
+            nombre = nombre.toUpperCase();
+        }
+
+        Cliente copia = new Cliente(id, nombre, email);
+        DetalleCliente d = c.getDetalle();
+        // La mitad de las copias se dieron de alta con otro teléfono
+        String telefono = rnd.nextBoolean() ? "+34 " + d.getTelefono() : "6" + String.format("%08d", rnd.nextInt(100_000_000));
+        copia.setDetalle(new DetalleCliente(id, d.getDireccion(), telefono, null));
+        return copia;
+    }
+
+    /**
+     * Exhaustividad: copias que han quedado en el mismo grupo que su original.
+     * Precisión: grupos con alguna pareja copia-original, y parejas de cada
+     * grupo que lo son (un grupo de k ids tiene k·(k-1)/2 parejas). Los grupos
+     * sin ninguna son falsos positivos: clientes distintos que se parecen.
+     */
+    private static void informarAcierto(List<DeduplicacionClientes.Grupo> grupos, Map<Integer, Integer> copias) {
+        Map<Integer, Integer> grupoDe = new HashMap<>();
+        for (int g = 0; g < grupos.size(); g++) {
+            for (int id : grupos.get(g).ids()) {
+                grupoDe.put(id, g);
+            }
+        }
+        int encontradas = 0;
+        for (Map.Entry<Integer, Integer> e : copias.entrySet()) {
+            Integer gc = grupoDe.get(e.getKey());
+            if (gc != null && gc.equals(grupoDe.get(e.getValue()))) {
+                encontradas++;
+            }
+        }
+        System.out.printf("Copias encontradas: %d de %d (%.1f%%)%n",
+                encontradas, copias.size(), 100.0 * encontradas / Math.max(1, copias.size()));
+
+        int conCopia = 0;
+        long parejas = 0;
+        for (int g = 0; g < grupos.size(); g++) {
+            int[] ids = grupos.get(g).ids();
+            parejas += (long) ids.length * (ids.length - 1) / 2;
+            for (int id : ids) {
+                Integer original = copias.get(id);
+                if (original != null && Integer.valueOf(g).equals(grupoDe.get(original))) {
+                    conCopia++;
+                    break;
+                }
+            }
+        }
+        int sinCopia = grupos.size() - conCopia;
+        System.out.printf("Grupos sin ninguna copia: %d de %d (precisión por grupos %.1f%%)%n",
+                sinCopia, grupos.size(), 100.0 * conCopia / Math.max(1, grupos.size()));
+        System.out.printf("Parejas copia-original: %d de %d parejas agrupadas (precisión por parejas %.1f%%)%n",
+                encontradas, parejas, 100.0 * encontradas / Math.max(1, parejas));
+    }
+}
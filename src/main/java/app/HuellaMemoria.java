@@ -0,0 +1,106 @@
+package app;
+
+import dao.Cadenas;
+import model.Cliente;
+import model.DetalleCliente;
+import model.Pedido;
+import services.GeneradorDatos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mide la memoria (heap) que ocupa cada Cliente cargado, sin BD.
+ *
+ * Construye N clientes realistas (GeneradorDatos, misma semilla en cada
+ * variante) y compara:
+ *  - antes:   id Integer y lista de pedidos creada siempre (modelo anterior),
+ *  - compacto: Cliente actual (id int, lista de pedidos perezosa),
+ *  - compacto + textos compartidos: además, nombres repetidos con Cadenas.
+ *
+ * Los bytes incluyen los textos de cada cliente. La medida es aproximada
+ * (memoria usada tras varios GC), pero estable con un N grande.
+ *
+ * Uso: HuellaMemoria [clientes=1000000]   (conviene -Xmx2g)
+ */
+public class HuellaMemoria {
+
+    /** Réplica del Cliente anterior, solo para comparar. */
+    @SuppressWarnings("unused")
+    private static final class ClienteAnterior {
+        private final Integer id;
+        private final String nombre;
+        private final String email;
+        private DetalleCliente detalle;
+        private List<Pedido> pedidos = new ArrayList<>();
+
+        ClienteAnterior(Integer id, String nombre, String email) {
+            this.id = id; this.nombre = nombre; this.email = email;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0].replace("clientes=", "")) : 1_000_000;
+
+        System.out.printf("=== Huella en heap de %,d clientes ===%n", n);
+
+        long antes = medir(n, (gen, id) -> {
+            Cliente c = gen.cliente(id);
+            return new ClienteAnterior(c.getId(), c.getNombre(), c.getEmail());
+        });
+        long compacto = medir(n, GeneradorDatos::cliente);
+
+        Cadenas cadenas = new Cadenas(1 << 14);
+        long compartido = medir(n, (gen, id) -> {
+            Cliente c = gen.cliente(id);
+            c.setNombre(cadenas.unica(c.getNombre()));
+            return c;
+        });
+
+        imprimir("antes (Integer + ArrayList)", antes, n, antes);
+        imprimir("compacto", compacto, n, antes);
+        imprimir("compacto + textos compartidos", compartido, n, antes);
+    }
+
+    private interface Fabrica {
+        Object crear(GeneradorDatos gen, int id);
+    }
+
+    /** Memoria retenida por n objetos creados con la fábrica, en bytes. */
+    private static long medir(int n, Fabrica fabrica) throws InterruptedException {
+        GeneradorDatos gen = new GeneradorDatos(42);
+        Object[] retenidos = new Object[n];   // se crea antes de medir: no cuenta
+
+        long inicio = usada();
+        for (int i = 0; i < n; i++) {
+            retenidos[i] = fabrica.crear(gen, i + 1_000);   // ids fuera de la caché de Integer
+        }
+        long fin = usada();
+
+        if (retenidos[n - 1] == null) {   // mantiene vivos los objetos hasta aquí
+            throw new IllegalStateException();
+        }
+        return fin - inicio;
+    }
+
+    private static long usada() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        long anterior = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long actual = rt.totalMemory() - rt.freeMemory();
+            if (actual >= anterior) {
+                return actual;
+            }
+            anterior = actual;
+        }
+        return anterior;
+    }
+
+    private static void imprimir(String variante, long bytes, int n, long referencia) {
+        System.out.printf("%-32s %8.1f bytes/cliente  %6.1f MB  (%+.0f%%)%n",
+                variante, (double) bytes / n, bytes / (1024.0 * 1024.0),
+                100.0 * (bytes - referencia) / referencia);
+    }
+}
@@ -1,19 +1,123 @@
 package app;
 
+import dao.ClienteDAO;
+import dao.DetalleClienteDAO;
+import db.Esquema;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
 public class LampreasVioletaApp extends Application {
+
+    private static CompletableFuture<Void> bdLista;
+
+    /**
+     * Prepara la BD en segundo plano (una sola vez): esquema al día y primera
+     * conexión y consultas hechas, para que la sincronización no pague el
+     * arranque en frío del driver. Si la BD no responde se arranca igualmente
+     * (la vista parte de la instantánea local). El futuro siempre se completa:
+     * con error si falla algo que no sea la conexión (p.ej. la configuración).
+     * Con el esquema al día se activa, si está configurada, la escritura
+     * diferida del detalle (y se vuelca lo que quedó en su diario).
+     */
+    static synchronized CompletableFuture<Void> prepararBd() {
+        if (bdLista == null) {
+            bdLista = new CompletableFuture<>();
+            Thread hilo = new Thread(() -> {
+                Throwable fallo = null;
+                try {
+                    Esquema.migrar();
+                    activarEscrituraDiferida();
+                    ClienteDAO dao = new ClienteDAO();
+                    dao.ahora();
+                    dao.findById(0);
+                    TiemposArranque.marcar("BD preparada");
+                } catch (SQLException e) {
+                    System.err.println("No se pudo preparar la BD: " + e.getMessage());
+                } catch (Throwable t) {
+                    // p.ej. configuración mal puesta (ExceptionInInitializerError en Db)
+                    System.err.println("No se pudo preparar la BD: " + t);
+                    fallo = t;
+                } finally {
+                    // Siempre se completa: quien espera (cargaInicial) no se queda colgado
+                    if (fallo != null) {
+                        bdLista.completeExceptionally(fallo);
+                    } else {
+                        bdLista.complete(null);
+                    }
+                }
+            }, "preparar-bd");
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+        return bdLista;
+    }
+
+    private static void activarEscrituraDiferida() {
+        try {
+            DetalleClienteDAO.activarEscrituraDiferida();
+        } catch (IOException e) {
+            // Sin diario los updates van directos a la BD
+            System.err.println("No se pudo abrir el diario de detalle: " + e.getMessage());
+        }
+    }
+
     @Override
     public void start(Stage stage) {
+        CompletableFuture<Void> bd = prepararBd();   // ya en marcha si se lanzó con Main
+        boolean entrenamiento = getParameters().getRaw().contains("--entrenamiento");
+
         ClientesView vistaClientes = new ClientesView();
         Scene scene = new Scene(vistaClientes.getRoot(), 900, 600);
         stage.setTitle("Gestión de Clientes - Lampreas Violeta");
         stage.setScene(scene);
+
+        // La ventana se enseña ya; los datos llegan después (primero la copia local)
+        Runnable primerFrame = new Runnable() {
+            private boolean visto;
+
+            @Override
+            public void run() {
+                if (visto) {
+                    return;
+                }
+                visto = true;
+                TiemposArranque.marcar("primer frame");
+                Platform.runLater(() -> {
+                    scene.removePostLayoutPulseListener(this);
+                    CompletableFuture<Void> sincronizada = vistaClientes.cargaInicial(bd);
+                    TiemposArranque.marcar("copia local pintada");
+                    sincronizada.thenRun(() -> {
+                        TiemposArranque.marcar("datos sincronizados");
+                        if (entrenamiento) {
+                            // Fin del entrenamiento de AppCDS: la JVM vuelca el archivo al salir.
+                            // System.exit y no Platform.exit, por si queda un diálogo de error abierto.
+                            System.exit(0);
+                        }
+                    });
+                });
+            }
+        };
+        scene.addPostLayoutPulseListener(primerFrame);
         stage.show();
     }
 
+    /** Al cerrar la ventana: vuelca el detalle pendiente de la escritura diferida. */
+    @Override
+    public void stop() {
+        try {
+            DetalleClienteDAO.cerrarEscrituraDiferida();
+        } catch (IOException e) {
+            // Lo no volcado sigue en el diario: se vuelca en el próximo arranque
+            System.err.println("No se pudo volcar el detalle pendiente: " + e.getMessage());
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
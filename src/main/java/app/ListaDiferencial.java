@@ -0,0 +1,261 @@
+package app;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * ObservableList que se refresca aplicando solo las diferencias.
+ *
+ * En lugar de {@code setAll(lista)} (que sustituye todas las filas, pierde la
+ * selección y obliga a la TableView a reconstruir todas las celdas visibles),
+ * {@link #actualizar(List)} compara la lista actual con la nueva por clave
+ * (p.ej. {@code Cliente.getId()}) y aplica el mínimo de operaciones:
+ *  - remove de las claves que ya no están,
+ *  - add de las claves nuevas,
+ *  - set de las filas cuya clave sigue pero cuyo contenido ha cambiado.
+ * Las filas que no cambian no generan evento, pero la lista se queda con la
+ * instancia nueva: lo que no compara mismoContenido (p.ej. datos cargados de
+ * forma perezosa) se ve en cuanto la fila se repinta, y las instancias viejas
+ * no se quedan retenidas.
+ *
+ * Todas las operaciones de un refresco se notifican como UN ÚNICO cambio
+ * (beginChange/endChange), así los listeners reciben un solo evento.
+ *
+ * @param <T> tipo de elemento (Cliente)
+ * @param <K> tipo de la clave (Integer)
+ */
+public class ListaDiferencial<T, K> extends ModifiableObservableListBase<T> {
+
+    /** Por debajo de este tamaño no merece la pena calcular diferencias. */
+    private static final int UMBRAL_MINIMO = 64;
+
+    private final List<T> elementos = new ArrayList<>();
+    private final Function<? super T, ? extends K> clave;
+    private final BiPredicate<? super T, ? super T> mismoContenido;
+
+    /**
+     * @param clave          extrae la clave única de cada elemento
+     * @param mismoContenido true si dos elementos con la misma clave se muestran igual
+     */
+    public ListaDiferencial(Function<? super T, ? extends K> clave,
+                            BiPredicate<? super T, ? super T> mismoContenido) {
+        this.clave = clave;
+        this.mismoContenido = mismoContenido;
+    }
+
+    // =========================================================================
+    //  REFRESCO INCREMENTAL
+    // =========================================================================
+
+    /**
+     * Deja la lista con el contenido (y el orden) de {@code nueva},
+     * tocando solo las filas que han cambiado.
+     */
+    public void actualizar(List<? extends T> nueva) {
+        int n = elementos.size();
+
+        if (n == 0 || nueva.isEmpty()) {
+            setAll(nueva);
+            return;
+        }
+
+        // Posición de cada clave en la lista nueva
+        HashMap<K, Integer> posNueva = new HashMap<>(nueva.size() * 4 / 3 + 1);
+        for (int i = 0; i < nueva.size(); i++) {
+            posNueva.put(clave.apply(nueva.get(i)), i);
+        }
+
+        // Para cada elemento actual: su posición en la nueva lista (-1 = desaparece)
+        int[] pos = new int[n];
+        for (int j = 0; j < n; j++) {
+            Integer p = posNueva.get(clave.apply(elementos.get(j)));
+            pos[j] = p == null ? -1 : p;
+        }
+
+        // Qué elementos se conservan en su sitio (el resto se borra y, si sigue
+        // existiendo, se vuelve a insertar en su nueva posición).
+        boolean[] mantener = conservables(pos);
+        int conservados = 0;
+        for (boolean m : mantener) {
+            if (m) conservados++;
+        }
+
+        // Si cambia casi todo, remove/add uno a uno es más caro que reemplazar.
+        int operaciones = (n - conservados) + (nueva.size() - conservados);
+        if (operaciones > Math.max(UMBRAL_MINIMO, Math.max(n, nueva.size()) / 8)) {
+            setAll(nueva);
+            return;
+        }
+
+        beginChange();
+        try {
+            // 1) Borrados (de atrás hacia delante para no desplazar índices pendientes)
+            for (int j = n - 1; j >= 0; j--) {
+                if (!mantener[j]) {
+                    remove(j);
+                }
+            }
+
+            // 2) Recorrido conjunto: los conservados están en el mismo orden que en 'nueva'
+            int j = 0;
+            for (T nuevo : nueva) {
+                if (j < elementos.size()
+                        && Objects.equals(clave.apply(elementos.get(j)), clave.apply(nuevo))) {
+                    if (!mismoContenido.test(elementos.get(j), nuevo)) {
+                        set(j, nuevo);
+                    } else {
+                        // Se pinta igual: sin evento, pero se guarda la instancia
+                        // nueva (trae sus propias relaciones, recién leídas)
+                        elementos.set(j, nuevo);
+                    }
+                } else {
+                    add(j, nuevo);
+                }
+                j++;
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Marca los elementos que pueden quedarse donde están: los que siguen en la
+     * lista nueva y forman la subsecuencia creciente más larga de posiciones.
+     * En el caso habitual (mismo orden, p.ej. ORDER BY id) es un solo recorrido.
+     */
+    private static boolean[] conservables(int[] pos) {
+        int n = pos.length;
+        boolean[] mantener = new boolean[n];
+
+        // Caso rápido: posiciones ya crecientes
+        int ultima = -1;
+        boolean creciente = true;
+        for (int j = 0; j < n && creciente; j++) {
+            if (pos[j] >= 0) {
+                creciente = pos[j] > ultima;
+                ultima = pos[j];
+            }
+        }
+        if (creciente) {
+            for (int j = 0; j < n; j++) {
+                mantener[j] = pos[j] >= 0;
+            }
+            return mantener;
+        }
+
+        // Subsecuencia creciente más larga, O(n log n)
+        int[] colas = new int[n];      // índice del menor final para cada longitud
+        int[] anterior = new int[n];
+        int longitud = 0;
+        for (int j = 0; j < n; j++) {
+            if (pos[j] < 0) continue;
+            int lo = 0, hi = longitud;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (pos[colas[mid]] < pos[j]) lo = mid + 1; else hi = mid;
+            }
+            anterior[j] = lo > 0 ? colas[lo - 1] : -1;
+            colas[lo] = j;
+            if (lo == longitud) longitud++;
+        }
+        for (int j = longitud > 0 ? colas[longitud - 1] : -1; j >= 0; j = anterior[j]) {
+            mantener[j] = true;
+        }
+        return mantener;
+    }
+
+    /**
+     * Reemplazo completo en bloque. La versión heredada hace clear() + addAll(),
+     * y clear() borra fila a fila desde el principio (cuadrático en listas grandes).
+     */
+    @Override
+    public boolean setAll(Collection<? extends T> col) {
+        beginChange();
+        try {
+            List<T> anteriores = new ArrayList<>(elementos);
+            elementos.clear();
+            elementos.addAll(col);
+            modCount++;
+            if (!anteriores.isEmpty() || !elementos.isEmpty()) {
+                nextReplace(0, elementos.size(), anteriores);
+            }
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    /**
+     * Ordena en el sitio y lo notifica como UNA permutación: la TableView mueve
+     * la selección con las filas en lugar de perderla. (La versión heredada de
+     * List hace un set por fila, y FXCollections.sort un setAll.) Es estable.
+     */
+    @Override
+    public void sort(Comparator<? super T> orden) {
+        int n = elementos.size();
+        if (n < 2) {
+            return;
+        }
+
+        Integer[] posiciones = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            posiciones[i] = i;
+        }
+        Arrays.sort(posiciones, (a, b) -> orden.compare(elementos.get(a), elementos.get(b)));
+
+        int[] permutacion = new int[n];   // posición anterior → posición nueva
+        List<T> ordenados = new ArrayList<>(n);
+        for (int nueva = 0; nueva < n; nueva++) {
+            permutacion[posiciones[nueva]] = nueva;
+            ordenados.add(elementos.get(posiciones[nueva]));
+        }
+
+        beginChange();
+        try {
+            elementos.clear();
+            elementos.addAll(ordenados);
+            modCount++;
+            nextPermutation(0, n, permutacion);
+        } finally {
+            endChange();
+        }
+    }
+
+    // =========================================================================
+    //  ALMACENAMIENTO (ModifiableObservableListBase)
+    // =========================================================================
+
+    @Override
+    public T get(int index) {
+        return elementos.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elementos.size();
+    }
+
+    @Override
+    protected void doAdd(int index, T element) {
+        elementos.add(index, element);
+    }
+
+    @Override
+    protected T doSet(int index, T element) {
+        return elementos.set(index, element);
+    }
+
+    @Override
+    protected T doRemove(int index) {
+        return elementos.remove(index);
+    }
+}
@@ -0,0 +1,30 @@
+package app;
+
+import javafx.application.Application;
+
+/**
+ * Lanzador de la aplicación optimizado para el arranque.
+ *
+ *  1) Empieza a preparar la BD (driver, primera conexión, esquema y consultas
+ *     principales) en un hilo aparte, mientras JavaFX arranca y se construye
+ *     la ventana.
+ *  2) La ventana se muestra vacía en cuanto está construida; después se pinta
+ *     la copia local de clientes y, al final, se sincroniza con la BD.
+ *  3) Cada hito se mide desde el arranque de la JVM (ver TiemposArranque).
+ *
+ * Con el perfil Maven "cds" ({@code mvn -Pcds package}) se genera además un
+ * archivo AppCDS a partir de una ejecución de entrenamiento ({@code --entrenamiento}:
+ * arranca, sincroniza y se cierra sola). Para usarlo:
+ *
+ *   java -XX:SharedArchiveFile=target/lampreas.jsa -jar target/LampreasVioleta-1.0-SNAPSHOT.jar
+ *
+ * No extiende Application a propósito: así se puede lanzar con JavaFX en el
+ * classpath (java -jar) y no solo como módulos.
+ */
+public class Main {
+
+    public static void main(String[] args) {
+        LampreasVioletaApp.prepararBd();
+        Application.launch(LampreasVioletaApp.class, args);
+    }
+}
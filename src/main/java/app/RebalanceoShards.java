@@ -0,0 +1,192 @@
+package app;
+
+import db.Carga;
+import db.Db;
+import db.Shards;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Herramienta de rebalanceo tras cambiar PG_SHARDS (añadir o quitar un shard).
+ *
+ * Recorre cada shard por bloques de ids y mueve al shard que le corresponde
+ * según el anillo actual cada cliente (con su detalle_cliente) que esté en el
+ * sitio equivocado. Por cada bloque, en una transacción en el origen:
+ *  1) SELECT ... FOR UPDATE de las filas a mover (cliente y detalle_cliente),
+ *  2) INSERT ... ON CONFLICT DO NOTHING en el shard destino (en su propia
+ *     transacción, que se confirma aquí),
+ *  3) DELETE en el origen y commit, que suelta los bloqueos.
+ *
+ * Si se interrumpe entre 2 y 3, basta con volver a lanzarla: la copia es
+ * idempotente.
+ *
+ * Con la aplicación en marcha: una escritura en el origen sobre un cliente que
+ * se está moviendo espera a que acabe su bloque y después ya no lo encuentra
+ * (0 filas, como si se hubiera borrado), en vez de perderse en silencio tras
+ * la copia. Las instancias que ya usan el PG_SHARDS nuevo no ven los clientes
+ * que aún no se han movido hasta que termina el rebalanceo.
+ *
+ * Uso: RebalanceoShards [tamañoBloque]
+ */
+public class RebalanceoShards {
+
+    /** Tablas que se mueven, en orden de inserción (el detalle depende del cliente). */
+    private static final String[] TABLAS = {"cliente", "detalle_cliente"};
+
+    private static final String COLUMNAS_SQL = """
+            SELECT column_name
+            FROM information_schema.columns
+            WHERE table_schema = current_schema()
+              AND table_name = ?
+              AND is_generated = 'NEVER'
+            ORDER BY ordinal_position
+            """;
+
+    public static void main(String[] args) {
+        int bloque = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        if (!Shards.activo()) {
+            System.out.println("PG_SHARDS no está configurado: no hay nada que rebalancear.");
+            return;
+        }
+
+        try (Carga.Ambito a = Db.usar(Carga.LOTE)) {
+            long movidos = 0;
+            for (int s = 0; s < Shards.numShards(); s++) {
+                movidos += rebalancearShard(s, bloque);
+            }
+            System.out.println("=== REBALANCEO TERMINADO: " + movidos + " clientes movidos ===");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static long rebalancearShard(int origen, int bloque) throws SQLException {
+        System.out.println("=== Shard " + Shards.nombre(origen) + " ===");
+        long movidos = 0;
+        int ultimoId = Integer.MIN_VALUE;
+
+        while (true) {
+            List<Integer> ids = new ArrayList<>(bloque);
+            try (Connection con = Shards.getConnection(origen);
+                 PreparedStatement ps = con.prepareStatement(
+                         "SELECT id FROM cliente WHERE id > ? ORDER BY id LIMIT ?")) {
+                ps.setInt(1, ultimoId);
+                ps.setInt(2, bloque);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getInt(1));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return movidos;
+            }
+            ultimoId = ids.get(ids.size() - 1);
+
+            // Agrupamos los ids mal ubicados por shard destino
+            Map<Integer, List<Integer>> porDestino = new HashMap<>();
+            for (int id : ids) {
+                int destino = Shards.shardDe(id);
+                if (destino != origen) {
+                    porDestino.computeIfAbsent(destino, k -> new ArrayList<>()).add(id);
+                }
+            }
+
+            for (Map.Entry<Integer, List<Integer>> e : porDestino.entrySet()) {
+                mover(origen, e.getKey(), e.getValue());
+                movidos += e.getValue().size();
+            }
+            System.out.println("  revisados hasta id " + ultimoId + ", movidos " + movidos);
+        }
+    }
+
+    private static void mover(int origen, int destino, List<Integer> ids) throws SQLException {
+        try (Connection src = Shards.getConnection(origen);
+             Connection dst = Shards.getConnection(destino)) {
+
+            Integer[] arr = ids.toArray(new Integer[0]);
+
+            src.setAutoCommit(false);
+            try {
+                // 1) Bloqueo en el origen hasta el commit del borrado (cliente antes
+                //    que detalle; un alta de detalle también espera, por su FK)
+                for (String tabla : TABLAS) {
+                    try (PreparedStatement ps = src.prepareStatement(
+                            "SELECT id FROM " + tabla + " WHERE id = ANY(?) FOR UPDATE")) {
+                        ps.setArray(1, src.createArrayOf("integer", arr));
+                        ps.execute();
+                    }
+                }
+
+                // 2) Copia al destino
+                dst.setAutoCommit(false);
+                try {
+                    for (String tabla : TABLAS) {
+                        copiarTabla(src, dst, tabla, arr);
+                    }
+                    dst.commit();
+                } catch (SQLException ex) {
+                    dst.rollback();
+                    throw ex;
+                }
+
+                // 3) Borrado en el origen (detalle antes que cliente)
+                for (int i = TABLAS.length - 1; i >= 0; i--) {
+                    try (PreparedStatement ps = src.prepareStatement(
+                            "DELETE FROM " + TABLAS[i] + " WHERE id = ANY(?)")) {
+                        ps.setArray(1, src.createArrayOf("integer", arr));
+                        ps.executeUpdate();
+                    }
+                }
+                src.commit();
+            } catch (SQLException ex) {
+                src.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    /** Copia las filas de 'tabla' con esos ids, columna a columna (sin columnas generadas). */
+    private static void copiarTabla(Connection src, Connection dst, String tabla, Integer[] ids)
+            throws SQLException {
+        List<String> columnas = new ArrayList<>();
+        try (PreparedStatement ps = src.prepareStatement(COLUMNAS_SQL)) {
+            ps.setString(1, tabla);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columnas.add(rs.getString(1));
+                }
+            }
+        }
+
+        String lista = String.join(", ", columnas);
+        String huecos = String.join(", ", Collections.nCopies(columnas.size(), "?"));
+
+        try (PreparedStatement sel = src.prepareStatement(
+                     "SELECT " + lista + " FROM " + tabla + " WHERE id = ANY(?)");
+             PreparedStatement ins = dst.prepareStatement(
+                     "INSERT INTO " + tabla + " (" + lista + ") VALUES (" + huecos + ")"
+                             + " ON CONFLICT DO NOTHING")) {
+
+            sel.setArray(1, src.createArrayOf("integer", ids));
+            try (ResultSet rs = sel.executeQuery()) {
+                while (rs.next()) {
+                    for (int c = 1; c <= columnas.size(); c++) {
+                        ins.setObject(c, rs.getObject(c));
+                    }
+                    ins.addBatch();
+                }
+            }
+            ins.executeBatch();
+        }
+    }
+}
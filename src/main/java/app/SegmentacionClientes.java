@@ -0,0 +1,61 @@
+package app;
+
+import db.Esquema;
+import services.SegmentacionRFM;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Herramienta que pone al día la segmentación RFM de los clientes.
+ *
+ *  1) Carga los agregados de rfm_cliente (o, con "recalcular", los rehace
+ *     con todo el histórico de pedidos: la primera vez y tras un backfill).
+ *  2) Suma los pedidos nuevos de la cola rfm_pendiente.
+ *  3) Puntúa, guarda los segmentos y muestra cuántos clientes hay en cada uno.
+ *
+ * Pensada para lanzarse periódicamente: sin "recalcular" solo lee los pedidos
+ * insertados desde la ejecución anterior.
+ *
+ * Uso: SegmentacionClientes [recalcular]
+ */
+public class SegmentacionClientes {
+
+    public static void main(String[] args) {
+        boolean recalcular = args.length > 0 && args[0].equals("recalcular");
+        SegmentacionRFM rfm = new SegmentacionRFM();
+
+        try {
+            Esquema.migrar();
+
+            long t0 = System.nanoTime();
+            if (recalcular) {
+                rfm.recalcular();
+                System.out.printf("Agregados recalculados en %d ms%n", (System.nanoTime() - t0) / 1_000_000);
+            } else {
+                rfm.cargar();
+            }
+
+            long t1 = System.nanoTime();
+            int cambiados = rfm.actualizar();
+            long t2 = System.nanoTime();
+            int puntuados = rfm.puntuar(LocalDate.now());
+            long t3 = System.nanoTime();
+            rfm.guardar();
+            long t4 = System.nanoTime();
+
+            System.out.printf("Pedidos nuevos sumados: %d clientes cambiados (%d ms)%n",
+                    cambiados, (t2 - t1) / 1_000_000);
+            System.out.printf("Puntuados %d clientes en %d ms, guardados en %d ms%n",
+                    puntuados, (t3 - t2) / 1_000_000, (t4 - t3) / 1_000_000);
+
+            System.out.println("=== SEGMENTOS ===");
+            for (Map.Entry<String, Integer> e : rfm.resumen().entrySet()) {
+                System.out.printf("  %-20s %d%n", e.getKey(), e.getValue());
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package app;
+
+import dao.ClienteDAO;
+import dao.DetalleClienteDAO;
+import db.Carga;
+import db.Db;
+import db.Esquema;
+import org.HdrHistogram.Histogram;
+import services.GeneradorDatos;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Herramienta de carga para planificación de capacidad (amplía DemoRelaciones).
+ *
+ * 1) Genera un conjunto de datos del tamaño pedido (reproducible con la semilla).
+ * 2) Lanza una carga concurrente mixta contra los DAOs a un ritmo objetivo:
+ *    lecturas por id, búsquedas, altas de clientes y modificaciones de detalle.
+ * 3) Muestra el throughput y los percentiles de latencia (HdrHistogram).
+ *
+ * Omisión coordinada: cada hilo sigue un calendario fijo de operaciones y la
+ * latencia se mide desde el instante en que la operación DEBÍA empezar. Si la
+ * BD se atasca, las operaciones que se quedaron esperando cuentan ese retraso
+ * (la latencia "servicio", sin corregir, se muestra aparte para comparar).
+ *
+ * Uso (argumentos clave=valor, todos opcionales):
+ *   clientes=100000 productos=500 pedidos=300000 semilla=42 lote=1000
+ *   hilos=8 ops=2000 segundos=60 mix=lectura:50,busqueda:15,alta:10,modificacion:25
+ *   generar=true salida=resultados
+ *
+ * Con LV_DETALLE_DIFERIDO las modificaciones de detalle usan la escritura
+ * diferida (ver DetalleClienteDAO); lo pendiente se vuelca al terminar.
+ */
+public class SimuladorCarga {
+
+    private enum Operacion { LECTURA, BUSQUEDA, ALTA, MODIFICACION }
+
+    /** Latencia máxima registrable: 1 hora en ns, 3 cifras significativas. */
+    private static final long MAX_NANOS = 3_600_000_000_000L;
+
+    public static void main(String[] args) {
+        Map<String, String> p = argumentos(args);
+        long semilla = Long.parseLong(p.getOrDefault("semilla", "42"));
+
+        try {
+            Esquema.migrar();
+            if (Boolean.parseBoolean(p.getOrDefault("generar", "true"))) {
+                System.out.println("=== Generando datos ===");
+                try (Carga.Ambito a = Db.usar(Carga.LOTE)) {
+                    new GeneradorDatos(semilla).cargar(
+                            Integer.parseInt(p.getOrDefault("clientes", "100000")),
+                            Integer.parseInt(p.getOrDefault("productos", "500")),
+                            Integer.parseInt(p.getOrDefault("pedidos", "300000")),
+                            Integer.parseInt(p.getOrDefault("lote", "1000")));
+                }
+            }
+
+            System.out.println("=== Carga concurrente ===");
+            DetalleClienteDAO.activarEscrituraDiferida();
+            try {
+                simular(
+                        Integer.parseInt(p.getOrDefault("hilos", "8")),
+                        Integer.parseInt(p.getOrDefault("ops", "2000")),
+                        Integer.parseInt(p.getOrDefault("segundos", "60")),
+                        mezcla(p.getOrDefault("mix", "lectura:50,busqueda:15,alta:10,modificacion:25")),
+                        semilla,
+                        p.get("salida"));
+            } finally {
+                DetalleClienteDAO.cerrarEscrituraDiferida();
+            }
+
+        } catch (SQLException | IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void simular(int hilos, int opsPorSegundo, int segundos, int[] mezcla,
+                                long semilla, String salida)
+            throws SQLException, IOException, InterruptedException {
+
+        ClienteDAO clienteDAO = new ClienteDAO();
+        DetalleClienteDAO detalleDAO = new DetalleClienteDAO();
+        int maxId = clienteDAO.maxId();
+        AtomicInteger siguienteAlta = new AtomicInteger(maxId + 1);
+        AtomicLong errores = new AtomicLong();
+
+        long intervalo = 1_000_000_000L * hilos / opsPorSegundo;  // ns entre ops de un mismo hilo
+        long inicio = System.nanoTime() + 100_000_000L;             // pequeño margen para arrancar hilos
+        long fin = inicio + segundos * 1_000_000_000L;
+
+        Histogram[][] corregidos = new Histogram[hilos][];
+        Histogram[][] servicio = new Histogram[hilos][];
+        List<Thread> trabajadores = new ArrayList<>(hilos);
+
+        for (int h = 0; h < hilos; h++) {
+            Histogram[] corr = nuevos();
+            Histogram[] serv = nuevos();
+            corregidos[h] = corr;
+            servicio[h] = serv;
+            GeneradorDatos gen = new GeneradorDatos(semilla + 1 + h);
+            Random rnd = new Random(semilla * 31 + h);
+            long desfase = intervalo * h / hilos; // reparte los hilos dentro del intervalo
+
+            Thread t = new Thread(() -> {
+                long previsto = inicio + desfase;
+                while (previsto < fin) {
+                    long ahora = System.nanoTime();
+                    if (ahora < previsto) {
+                        LockSupport.parkNanos(previsto - ahora);
+                    }
+
+                    Operacion op = elegir(mezcla, rnd.nextInt(100));
+                    long t0 = System.nanoTime();
+                    try {
+                        switch (op) {
+                            case LECTURA -> clienteDAO.findById(1 + rnd.nextInt(Math.max(1, maxId)));
+                            case BUSQUEDA -> clienteDAO.search(gen.filtroBusqueda());
+                            case ALTA -> clienteDAO.insert(gen.cliente(siguienteAlta.getAndIncrement()));
+                            case MODIFICACION -> detalleDAO.update(gen.detalle(1 + rnd.nextInt(Math.max(1, maxId))));
+                        }
+                    } catch (SQLException e) {
+                        errores.incrementAndGet();
+                    }
+                    long t1 = System.nanoTime();
+
+                    corr[op.ordinal()].recordValue(Math.min(t1 - previsto, MAX_NANOS));
+                    serv[op.ordinal()].recordValue(Math.min(t1 - t0, MAX_NANOS));
+                    previsto += intervalo;
+                }
+            }, "carga-" + h);
+            trabajadores.add(t);
+            t.start();
+        }
+        for (Thread t : trabajadores) {
+            t.join();
+        }
+        double duracion = (System.nanoTime() - inicio) / 1e9;
+
+        // ----- Informe -----
+        Histogram totalCorr = new Histogram(MAX_NANOS, 3);
+        System.out.printf("%nObjetivo: %d ops/s con %d hilos durante %d s. Errores: %d%n%n",
+                opsPorSegundo, hilos, segundos, errores.get());
+        System.out.printf("%-13s %9s %9s | %-37s | %-37s%n", "operación", "ops", "ops/s",
+                "corregida  p50 / p99 / p99.9 / máx (ms)", "servicio   p50 / p99 / p99.9 / máx (ms)");
+
+        for (Operacion op : Operacion.values()) {
+            Histogram corr = new Histogram(MAX_NANOS, 3);
+            Histogram serv = new Histogram(MAX_NANOS, 3);
+            for (int h = 0; h < hilos; h++) {
+                corr.add(corregidos[h][op.ordinal()]);
+                serv.add(servicio[h][op.ordinal()]);
+            }
+            totalCorr.add(corr);
+            System.out.printf("%-13s %9d %9.1f | %-37s | %-37s%n",
+                    op.name().toLowerCase(), corr.getTotalCount(), corr.getTotalCount() / duracion,
+                    resumen(corr), resumen(serv));
+            guardar(salida, op.name().toLowerCase(), corr);
+        }
+        System.out.printf("%nTOTAL: %d ops, %.1f ops/s%n", totalCorr.getTotalCount(),
+                totalCorr.getTotalCount() / duracion);
+
+        System.out.println("\n=== Distribución de latencia corregida (ms) ===");
+        totalCorr.outputPercentileDistribution(System.out, 1_000_000.0);
+        guardar(salida, "total", totalCorr);
+    }
+
+    private static Histogram[] nuevos() {
+        Histogram[] out = new Histogram[Operacion.values().length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = new Histogram(MAX_NANOS, 3);
+        }
+        return out;
+    }
+
+    private static String resumen(Histogram h) {
+        if (h.getTotalCount() == 0) {
+            return "-";
+        }
+        return "%.2f / %.2f / %.2f / %.2f".formatted(
+                h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6,
+                h.getValueAtPercentile(99.9) / 1e6, h.getMaxValue() / 1e6);
+    }
+
+    /** Guarda la distribución en formato .hgrm (se puede pintar con HdrHistogram Plotter). */
+    private static void guardar(String salida, String nombre, Histogram h) throws IOException {
+        if (salida == null) {
+            return;
+        }
+        Path dir = Files.createDirectories(Path.of(salida));
+        try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(nombre + ".hgrm")))) {
+            h.outputPercentileDistribution(out, 1_000_000.0);
+        }
+    }
+
+    /** "lectura:50,busqueda:15,..." → límites acumulados sobre 100. */
+    private static int[] mezcla(String texto) {
+        int[] pesos = new int[Operacion.values().length];
+        for (String parte : texto.split(",")) {
+            String[] kv = parte.split(":");
+            pesos[Operacion.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(kv[1].trim());
+        }
+        int total = 0;
+        for (int w : pesos) total += w;
+        int[] acumulado = new int[pesos.length];
+        int suma = 0;
+        for (int i = 0; i < pesos.length; i++) {
+            suma += pesos[i];
+            acumulado[i] = suma * 100 / Math.max(1, total);
+        }
+        return acumulado;
+    }
+
+    private static Operacion elegir(int[] acumulado, int tirada) {
+        for (int i = 0; i < acumulado.length; i++) {
+            if (tirada < acumulado[i]) {
+                return Operacion.values()[i];
+            }
+        }
+        return Operacion.LECTURA;
+    }
+
+    private static Map<String, String> argumentos(String[] args) {
+        Map<String, String> out = new HashMap<>();
+        for (String a : args) {
+            int i = a.indexOf('=');
+            if (i > 0) {
+                out.put(a.substring(0, i), a.substring(i + 1));
+            }
+        }
+        return out;
+    }
+}
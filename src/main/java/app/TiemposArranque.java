@@ -0,0 +1,25 @@
+package app;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Mide los hitos del arranque desde que se lanzó la JVM (no desde main):
+ * así cuenta también la carga de clases, que es lo que reduce AppCDS.
+ *
+ * Escribe cada hito en la salida estándar: "[arranque] primer frame: 412 ms".
+ */
+final class TiemposArranque {
+
+    private static final Instant INICIO = ProcessHandle.current().info().startInstant()
+            .orElseGet(Instant::now);
+
+    private TiemposArranque() {}
+
+    /** Registra un hito y devuelve los ms transcurridos desde el arranque de la JVM. */
+    static long marcar(String hito) {
+        long ms = Duration.between(INICIO, Instant.now()).toMillis();
+        System.out.printf("[arranque] %s: %d ms%n", hito, ms);
+        return ms;
+    }
+}
@@ -0,0 +1,204 @@
+package dao;
+
+import db.Db;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DAO del archivado de pedidos: mueve pedidos antiguos (con sus líneas) de
+ * pedido/detalle_pedido a pedido_archivo/detalle_pedido_archivo.
+ *
+ * Se trabaja partición a partición y por lotes de ids: cada lote es una
+ * transacción corta (pocos bloqueos y poco WAL de golpe) que además apunta en
+ * archivo_progreso el último id movido. Las particiones que quedan vacías se
+ * separan de pedido y se borran.
+ */
+public class ArchivoPedidosDAO {
+
+    /** Un lote movido: pedidos, líneas y último id (0 pedidos = partición terminada). */
+    public record Lote(int pedidos, int lineas, int ultimoId) {}
+
+    /** Partición de pedido: nombre y fin de su rango (null = la DEFAULT). */
+    public record Particion(String nombre, LocalDate hasta) {}
+
+    // =========================================================================
+    //  SQL COMO CONSTANTES
+    // =========================================================================
+
+    private static final String PARTICIONES_SQL = """
+            SELECT c.relname, pg_get_expr(c.relpartbound, c.oid)
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'pedido'::regclass
+            ORDER BY c.relname
+            """;
+
+    /** "FOR VALUES FROM ('2023-01-01') TO ('2023-02-01')" → 2023-02-01 */
+    private static final Pattern HASTA = Pattern.compile("TO \\('(\\d{4}-\\d{2}-\\d{2})'\\)");
+
+    private static final String ULTIMO_ID_SQL =
+            "SELECT ultimo_id FROM archivo_progreso WHERE particion = ?";
+
+    // Un lote en una sola sentencia: borra de la partición los siguientes
+    // pedidos por id (anteriores al corte) y sus líneas, y los inserta en el
+    // archivo. Los índices por id (PK) hacen que cada lote empiece donde acabó
+    // el anterior sin recorrer lo ya movido. %1$s = partición (ya entrecomillada).
+    private static final String MOVER_LOTE_SQL = """
+            WITH lote AS (
+                DELETE FROM %1$s p
+                WHERE p.id IN (SELECT id FROM %1$s WHERE id > ? AND fecha < ? ORDER BY id LIMIT ?)
+                  AND p.fecha < ?
+                RETURNING p.id, p.cliente_id, p.fecha
+            ), lineas AS (
+                DELETE FROM detalle_pedido d
+                WHERE d.pedido_id IN (SELECT id FROM lote)
+                RETURNING d.pedido_id, d.producto_id, d.cantidad, d.precio_unit
+            ), lineas_archivadas AS (
+                INSERT INTO detalle_pedido_archivo (pedido_id, producto_id, cantidad, precio_unit)
+                SELECT pedido_id, producto_id, cantidad, precio_unit FROM lineas
+                RETURNING pedido_id
+            ), archivados AS (
+                INSERT INTO pedido_archivo (id, cliente_id, fecha)
+                SELECT id, cliente_id, fecha FROM lote
+                RETURNING id
+            )
+            SELECT (SELECT count(*) FROM archivados),
+                   (SELECT count(*) FROM lineas_archivadas),
+                   (SELECT max(id) FROM archivados)
+            """;
+
+    private static final String PROGRESO_SQL = """
+            INSERT INTO archivo_progreso (particion, ultimo_id, movidos)
+            VALUES (?, ?, ?)
+            ON CONFLICT (particion) DO UPDATE
+            SET ultimo_id = EXCLUDED.ultimo_id,
+                movidos = archivo_progreso.movidos + EXCLUDED.movidos,
+                actualizado_en = now()
+            """;
+
+    private static final String BORRAR_PROGRESO_SQL =
+            "DELETE FROM archivo_progreso WHERE particion = ?";
+
+    /**
+     * Espera máxima por un bloqueo dentro de un lote: si hay una transacción
+     * larga delante, mejor fallar y reintentar que dejar a otros en cola detrás.
+     */
+    private static final String LOCK_TIMEOUT_SQL = "SET LOCAL lock_timeout = '2s'";
+
+    // =========================================================================
+    //  PARTICIONES Y PROGRESO
+    // =========================================================================
+
+    /** Particiones de pedido, con el final de su rango (null en la DEFAULT). */
+    public List<Particion> particiones() throws SQLException {
+        List<Particion> out = new ArrayList<>();
+        try (Connection con = Db.getConnection();
+             PreparedStatement pst = con.prepareStatement(PARTICIONES_SQL);
+             ResultSet rs = pst.executeQuery()) {
+            while (rs.next()) {
+                Matcher m = HASTA.matcher(rs.getString(2));
+                out.add(new Particion(rs.getString(1), m.find() ? LocalDate.parse(m.group(1)) : null));
+            }
+        }
+        return out;
+    }
+
+    /** Último id archivado de la partición (Integer.MIN_VALUE si aún no se ha empezado). */
+    public int ultimoId(String particion) throws SQLException {
+        try (Connection con = Db.getConnection();
+             PreparedStatement pst = con.prepareStatement(ULTIMO_ID_SQL)) {
+            pst.setString(1, particion);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : Integer.MIN_VALUE;
+            }
+        }
+    }
+
+    // =========================================================================
+    //  ESCRITURA
+    // =========================================================================
+
+    /**
+     * Mueve al archivo, en una transacción, hasta {@code tamano} pedidos de la
+     * partición con id mayor que {@code desdeId} y fecha anterior a {@code corte},
+     * con sus líneas, y guarda el progreso.
+     */
+    public Lote moverLote(String particion, LocalDate corte, int desdeId, int tamano) throws SQLException {
+        try (Connection con = Db.getConnection()) {
+            con.setAutoCommit(false);
+            try (Statement st = con.createStatement();
+                 PreparedStatement pst = con.prepareStatement(MOVER_LOTE_SQL.formatted(identificador(particion)))) {
+                st.execute(LOCK_TIMEOUT_SQL);
+
+                pst.setInt(1, desdeId);
+                pst.setObject(2, corte);
+                pst.setInt(3, tamano);
+                pst.setObject(4, corte);
+
+                Lote lote;
+                try (ResultSet rs = pst.executeQuery()) {
+                    rs.next();
+                    lote = new Lote(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+                }
+
+                if (lote.pedidos() > 0) {
+                    try (PreparedStatement prog = con.prepareStatement(PROGRESO_SQL)) {
+                        prog.setString(1, particion);
+                        prog.setInt(2, lote.ultimoId());
+                        prog.setLong(3, lote.pedidos());
+                        prog.executeUpdate();
+                    }
+                }
+                con.commit();
+                return lote;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Separa de pedido la partición y la borra, si está vacía. Devuelve false
+     * (y no toca nada) si aún tiene filas.
+     */
+    public boolean soltarParticion(String particion) throws SQLException {
+        String tabla = identificador(particion);
+        try (Connection con = Db.getConnection()) {
+            con.setAutoCommit(false);
+            try (Statement st = con.createStatement()) {
+                st.execute(LOCK_TIMEOUT_SQL);
+                // Primero DETACH (bloquea la partición): así nadie puede meter
+                // una fila entre comprobar que está vacía y borrarla
+                st.execute("ALTER TABLE pedido DETACH PARTITION " + tabla);
+                try (ResultSet rs = st.executeQuery("SELECT EXISTS (SELECT 1 FROM " + tabla + ")")) {
+                    rs.next();
+                    if (rs.getBoolean(1)) {
+                        con.rollback();
+                        return false;
+                    }
+                }
+                st.execute("DROP TABLE " + tabla);
+                try (PreparedStatement pst = con.prepareStatement(BORRAR_PROGRESO_SQL)) {
+                    pst.setString(1, particion);
+                    pst.executeUpdate();
+                }
+                con.commit();
+                return true;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /** Nombre de tabla entrecomillado para concatenarlo en la SQL. */
+    private static String identificador(String nombre) {
+        return '"' + nombre.replace("\"", "\"\"") + '"';
+    }
+}
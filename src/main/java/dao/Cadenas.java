@@ -0,0 +1,45 @@
+package dao;
+
+/**
+ * Reserva acotada de textos repetidos (nombres, notas, productos...).
+ *
+ * Cada String leído de la BD es un objeto nuevo aunque el texto se repita en
+ * miles de filas. {@link #unica(String)} devuelve la instancia que ya se tenía
+ * si el texto es igual, y la copia nueva queda como basura de vida corta.
+ *
+ * Es una tabla de tamaño fijo indexada por hash (como una caché directa): un
+ * texto nuevo sustituye al que ocupara su hueco. Nunca crece, así que no hace
+ * falta vaciarla, y a diferencia de String.intern() no retiene nada para siempre.
+ * Se puede usar desde varios hilos sin sincronizar: en el peor caso dos hilos
+ * guardan copias distintas del mismo texto, que sigue siendo correcto.
+ */
+public final class Cadenas {
+
+    private final String[] tabla;
+    private final int mascara;
+
+    /** @param capacidad número de huecos (se redondea a potencia de 2) */
+    public Cadenas(int capacidad) {
+        int n = 16;
+        while (n < capacidad) {
+            n <<= 1;
+        }
+        this.tabla = new String[n];
+        this.mascara = n - 1;
+    }
+
+    /** El propio texto o una instancia igual ya guardada. */
+    public String unica(String s) {
+        if (s == null) {
+            return null;
+        }
+        int h = s.hashCode();
+        int i = (h ^ (h >>> 16)) & mascara;
+        String previa = tabla[i];
+        if (s.equals(previa)) {
+            return previa;
+        }
+        tabla[i] = s;
+        return s;
+    }
+}
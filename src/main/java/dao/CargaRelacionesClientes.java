@@ -0,0 +1,56 @@
+package dao;
+
+import model.CargaPorLotes;
+import model.Cliente;
+import model.DetalleCliente;
+import model.Pedido;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carga perezosa de detalle y pedidos para los listados de ClienteDAO.
+ * Cada lote se resuelve con DetalleClienteDAO.findByIds / PedidoDAO.findByClientes.
+ */
+class CargaRelacionesClientes extends CargaPorLotes {
+
+    /** Clientes por consulta: lo bastante para cubrir una pantalla con holgura. */
+    private static final int TAMANO_LOTE = 256;
+
+    private final DetalleClienteDAO detalleDAO = new DetalleClienteDAO();
+    private final PedidoDAO pedidoDAO = new PedidoDAO();
+
+    CargaRelacionesClientes(List<Cliente> clientes) {
+        super(clientes, TAMANO_LOTE);
+    }
+
+    @Override
+    protected void cargarDetalles(List<Cliente> lote) throws SQLException {
+        Map<Integer, DetalleCliente> detalles = detalleDAO.findByIds(ids(lote));
+        for (Cliente c : lote) {
+            c.setDetalle(detalles.get(c.getId()));
+        }
+    }
+
+    @Override
+    protected void cargarPedidos(List<Cliente> lote) throws SQLException {
+        Map<Integer, Cliente> porId = new HashMap<>();
+        for (Cliente c : lote) {
+            porId.put(c.getId(), c);
+        }
+        for (Pedido p : pedidoDAO.findByClientes(porId.keySet())) {
+            porId.get(p.getClienteId()).addPedido(p);
+        }
+    }
+
+    private static List<Integer> ids(List<Cliente> lote) {
+        List<Integer> out = new ArrayList<>(lote.size());
+        for (Cliente c : lote) {
+            out.add(c.getId());
+        }
+        return out;
+    }
+}
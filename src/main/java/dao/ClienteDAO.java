@@ -3,8 +3,14 @@ package dao;
 // clases dedicadas exclusivamente a hablar con la base de datos.
 
 import db.Db;
+import db.FilaMapper;
 // Clase que gestiona la obtención de conexiones JDBC (probablemente un método estático getConnection()).
 
+import db.MapeadorFilas;
+import db.Parametros;
+import db.Shards;
+// Reparto de clientes entre varias BBDD: listados y búsquedas se lanzan en todos los shards.
+
 import model.Cliente;
 // Modelo/entidad Cliente. Representa una fila de la tabla 'cliente'.
 
@@ -12,10 +18,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 // Imports necesarios para el uso del API JDBC de Java.
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 // Usamos listas dinámicas para devolver varios clientes cuando hacemos un SELECT *.
 
 public class ClienteDAO {
@@ -32,16 +44,20 @@ public class ClienteDAO {
     // Usamos ? para parámetros → evita SQL injection y mejora rendimiento con sentencias preparadas.
 
     private static final String SELECT_BY_ID_SQL =
-            "SELECT id, nombre, email FROM cliente WHERE id = ?";
+            "SELECT id, nombre, email, version FROM cliente WHERE id = ?";
     // Consulta SQL para buscar un cliente por su ID.
 
     private static final String SELECT_ALL_SQL =
-            "SELECT id, nombre, email FROM cliente ORDER BY id";
+            "SELECT id, nombre, email, version FROM cliente ORDER BY id";
     // Consulta SQL para obtener todos los clientes ordenados por id.
 
+    private static final String SELECT_BY_IDS_SQL =
+            "SELECT id, nombre, email, version FROM cliente WHERE id = ANY(?)";
+    // Consulta SQL para traer de una vez varios clientes por id (p.ej. los de una búsqueda de texto).
+
 
     private static final String SEARCH_SQL = """
-                    SELECT id, nombre, email
+                    SELECT id, nombre, email, version
                     FROM cliente
                     WHERE CAST(id AS TEXT) ILIKE ? 
                         OR nombre ILIKE ?  
@@ -49,6 +65,50 @@ public class ClienteDAO {
                     ORDER BY id                    
                     """;
 
+    private static final String UPDATE_SQL = """
+                    UPDATE cliente
+                    SET nombre = ?, email = ?, version = version + 1
+                    WHERE id = ? AND version = ?
+                    """;
+    // UPDATE optimista ("compare-and-set"): solo se aplica si nadie ha cambiado la fila
+    // desde que la leímos. No hace falta SELECT ... FOR UPDATE ni mantener bloqueos
+    // mientras el usuario edita; si devuelve 0 filas, la versión que teníamos está obsoleta.
+
+    private static final String SELECT_CON_DETALLE_SQL = """
+                    SELECT c.id, c.nombre, c.email, c.version,
+                           d.id AS detalle_id, d.direccion, d.telefono, d.notas
+                    FROM cliente c
+                    LEFT JOIN detalle_cliente d ON d.id = c.id
+                    ORDER BY c.id
+                    """;
+    // Clientes con su detalle (1:1) en una sola consulta. Se usa para la instantánea local.
+
+    private static final String SELECT_MODIFICADOS_SQL = """
+                    SELECT c.id, c.nombre, c.email, c.version,
+                           d.id AS detalle_id, d.direccion, d.telefono, d.notas
+                    FROM cliente c
+                    LEFT JOIN detalle_cliente d ON d.id = c.id
+                    WHERE c.actualizado_en > ? OR d.actualizado_en > ?
+                    ORDER BY c.id
+                    """;
+    // Solo los clientes (o detalles) modificados desde una marca de tiempo.
+    // Requiere las columnas actualizado_en, mantenidas por trigger en la BD.
+
+    private static final String SELECT_IDS_SQL =
+            "SELECT id FROM cliente ORDER BY id";
+    // Solo los ids: sirve para detectar clientes borrados sin traer las filas.
+
+    private static final String MAX_ID_SQL =
+            "SELECT COALESCE(MAX(id), 0) FROM cliente";
+    // Mayor id usado (con shards, se pide a cada uno y nos quedamos con el mayor).
+
+    private static final String AHORA_SQL =
+            "SELECT clock_timestamp()";
+    // Hora del servidor de BD (no la del equipo local) para marcar instantáneas.
+
+    private static final Comparator<Cliente> POR_ID = Comparator.comparingInt(Cliente::getId);
+    // Orden con el que se mezclan los resultados de varios shards (el mismo que ORDER BY id).
+
 
     // ----------------------------------------------------------
     // MÉTODO: INSERTAR UN CLIENTE
@@ -58,11 +118,12 @@ public class ClienteDAO {
         // Método público que inserta un cliente en la base de datos.
         // Recibe un objeto Cliente y lanza SQLException si algo sale mal.
 
-        try (Connection con = Db.getConnection();
+        try (Connection con = Db.getConnection(c.getId());
              PreparedStatement ps = con.prepareStatement(INSERT_SQL)) {
 
             // try-with-resources: la conexión y el PreparedStatement se cerrarán automáticamente
             // al final del bloque, aunque haya errores.
+            // Con shards, la conexión es la del servidor que guarda este id.
 
             ps.setInt(1, c.getId());         // Parámetro 1 → columna id
             ps.setString(2, c.getNombre());  // Parámetro 2 → columna nombre
@@ -75,6 +136,97 @@ public class ClienteDAO {
     }
 
 
+    // ----------------------------------------------------------
+    // MÉTODO: INSERTAR VARIOS CLIENTES
+    // ----------------------------------------------------------
+
+    public void insertBatch(Collection<Cliente> clientes) throws SQLException {
+        // Igual que insert, pero agrupando muchas filas en un solo viaje a la BD
+        // (executeBatch) y en una transacción por shard.
+
+        for (List<Cliente> lote : Shards.agrupar(clientes, Cliente::getId).values()) {
+            try (Connection con = Db.getConnection(lote.get(0).getId())) {
+                con.setAutoCommit(false);
+                try (PreparedStatement ps = con.prepareStatement(INSERT_SQL)) {
+                    for (Cliente c : lote) {
+                        ps.setInt(1, c.getId());
+                        ps.setString(2, c.getNombre());
+                        ps.setString(3, c.getEmail());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    con.commit();
+                } catch (SQLException e) {
+                    con.rollback();   // si falla una fila, no se guarda ninguna del lote
+                    throw e;
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    // MÉTODO: ACTUALIZAR UN CLIENTE (concurrencia optimista)
+    // ----------------------------------------------------------
+
+    public boolean update(Cliente c) throws SQLException {
+        // Actualiza nombre y email si la versión de 'c' sigue siendo la de la BD.
+        // Devuelve true si se actualizó (y deja en 'c' la nueva versión) o false si
+        // otro usuario lo modificó o borró antes: hay que recargarlo y repetir.
+
+        return updateBatch(List.of(c)).isEmpty();
+    }
+
+
+    // ----------------------------------------------------------
+    // MÉTODO: ACTUALIZAR VARIOS CLIENTES
+    // ----------------------------------------------------------
+
+    public List<Integer> updateBatch(Collection<Cliente> clientes) throws SQLException {
+        // Igual que update, para miles de filas: un executeBatch y una transacción por shard.
+        // Las filas con versión obsoleta NO hacen fallar el lote: se actualizan las demás
+        // y se devuelven los ids en conflicto (lista vacía = todo actualizado).
+        // Cada fila solo queda bloqueada lo que dura su UPDATE, nunca mientras se edita.
+
+        List<Integer> conflictos = new ArrayList<>();
+
+        for (List<Cliente> lote : Shards.agrupar(clientes, Cliente::getId).values()) {
+            lote.sort(POR_ID);   // mismo orden de bloqueo en todos los lotes → sin interbloqueos
+
+            try (Connection con = Db.getConnection(lote.get(0).getId())) {
+                con.setAutoCommit(false);
+                try (PreparedStatement ps = con.prepareStatement(UPDATE_SQL)) {
+                    for (Cliente c : lote) {
+                        ps.setString(1, c.getNombre());
+                        ps.setString(2, c.getEmail());
+                        ps.setInt(3, c.getId());
+                        ps.setInt(4, c.getVersion());
+                        ps.addBatch();
+                    }
+                    int[] filas = ps.executeBatch();
+                    con.commit();
+
+                    // filas[i] = 1 → actualizado; 0 → la versión ya no coincidía
+                    for (int i = 0; i < filas.length; i++) {
+                        Cliente c = lote.get(i);
+                        if (filas[i] == 0) {
+                            conflictos.add(c.getId());
+                        } else {
+                            c.setVersion(c.getVersion() + 1);
+                        }
+                    }
+                } catch (SQLException e) {
+                    con.rollback();
+                    throw e;
+                }
+            }
+        }
+
+        conflictos.sort(null);
+        return conflictos;
+    }
+
+
     // ----------------------------------------------------------
     // MÉTODO: BUSCAR CLIENTE POR ID
     // ----------------------------------------------------------
@@ -83,7 +235,7 @@ public class ClienteDAO {
         // Devuelve el Cliente cuyo id coincida con el parámetro.
         // Si no existe, devuelve null.
 
-        try (Connection con = Db.getConnection();
+        try (Connection con = Db.getReadConnection(id);
              PreparedStatement ps = con.prepareStatement(SELECT_BY_ID_SQL)) {
 
             ps.setInt(1, id);  // Asignamos el id al parámetro ?
@@ -94,11 +246,8 @@ public class ClienteDAO {
                 if (rs.next()) {
                     // Si rs.next() = true → hay fila. Avanzamos a ella y leemos sus columnas.
 
-                    return new Cliente(
-                            rs.getInt("id"),          // Columna 'id'
-                            rs.getString("nombre"),   // Columna 'nombre'
-                            rs.getString("email")     // Columna 'email'
-                    );
+                    return Mapeadores.CLIENTE.para(rs).map(rs);
+                    // El mapeador lee las columnas id, nombre y email (ver dao.Mapeadores).
                 }
 
                 return null;
@@ -109,67 +258,129 @@ public class ClienteDAO {
 
 
     // ----------------------------------------------------------
-    // MÉTODO: LISTAR TODOS LOS CLIENTES
+    // MÉTODO: BUSCAR VARIOS CLIENTES POR ID
     // ----------------------------------------------------------
 
-    public List<Cliente> findAll() throws SQLException {
-        // Devuelve una lista con todos los clientes de la tabla.
-        // Nunca devuelve null; si no hay datos, devuelve lista vacía.
-
-        List<Cliente> out = new ArrayList<>();
-
-        try (Connection con = Db.getConnection();
-             PreparedStatement ps = con.prepareStatement(SELECT_ALL_SQL);
-             ResultSet rs = ps.executeQuery()) {
+    public Map<Integer, Cliente> findByIds(Collection<Integer> ids) throws SQLException {
+        // Devuelve los clientes de esos ids (los que no existen no aparecen en el mapa),
+        // con una consulta = ANY por shard. Detalle y pedidos se cargan al pedirlos.
 
-            while (rs.next()) {
-                // Iteramos por cada fila del ResultSet.
-                // Cada fila se convierte en un objeto Cliente.
+        Map<Integer, Cliente> out = new HashMap<>();
+        for (List<Integer> grupo : Shards.agrupar(ids, Integer::intValue).values()) {
+            try (Connection con = Db.getReadConnection(grupo.get(0));
+                 PreparedStatement ps = con.prepareStatement(SELECT_BY_IDS_SQL)) {
 
-                Cliente c = new Cliente(
-                        rs.getInt("id"),
-                        rs.getString("nombre"),
-                        rs.getString("email")
-                );
+                ps.setArray(1, con.createArrayOf("integer", grupo.toArray()));
 
-                out.add(c);   // Añadimos el cliente a la lista.
+                try (ResultSet rs = ps.executeQuery()) {
+                    FilaMapper<Cliente> mapper = Mapeadores.CLIENTE.para(rs);
+                    while (rs.next()) {
+                        Cliente c = mapper.map(rs);
+                        out.put(c.getId(), c);
+                    }
+                }
             }
         }
 
-        return out;   // Devolvemos la lista completa.
+        List<Cliente> porId = new ArrayList<>(out.values());
+        porId.sort(POR_ID);   // la carga por lotes necesita el listado ordenado por id
+        new CargaRelacionesClientes(porId).enganchar();
+        return out;
+    }
+
+
+    // ----------------------------------------------------------
+    // MÉTODO: LISTAR TODOS LOS CLIENTES
+    // ----------------------------------------------------------
+
+    public List<Cliente> findAll() throws SQLException {
+        // Devuelve una lista con todos los clientes de la tabla.
+        // Nunca devuelve null; si no hay datos, devuelve lista vacía.
+
+        // Con shards la consulta se lanza en paralelo en todos ellos y los resultados
+        // (cada uno ya ordenado por id) se mezclan en un único listado ordenado.
+        // Cada fila del ResultSet se convierte en un Cliente con Mapeadores.CLIENTE, que busca
+        // los índices de las columnas una sola vez por ResultSet y después lee por posición.
+        List<Cliente> clientes =
+                Shards.consultarTodos(SELECT_ALL_SQL, Parametros.NINGUNO, Mapeadores.CLIENTE, POR_ID);
+
+        // Detalle y pedidos NO se traen aquí: se cargan al primer getDetalle()/getPedidos(),
+        // de 256 en 256 clientes con una consulta = ANY (ver CargaRelacionesClientes).
+        new CargaRelacionesClientes(clientes).enganchar();
+        return clientes;
     }
 
     public List<Cliente> search(String filtro) throws SQLException {
 
         String patron = "%" + filtro + "%";
 
-        try (Connection con = Db.getConnection();
-           PreparedStatement pst = con.prepareStatement(SEARCH_SQL)) {
+        List<Cliente> clientes = Shards.consultarTodos(SEARCH_SQL, pst -> {
             pst.setString(1, patron);
             pst.setString(2, patron);
             pst.setString(3, patron);
+        }, Mapeadores.CLIENTE, POR_ID);
 
-            List<Cliente> out = new ArrayList<>();
+        new CargaRelacionesClientes(clientes).enganchar();
+        return clientes;
+    }
 
-            try(ResultSet rs = pst.executeQuery()){
+    // ----------------------------------------------------------
+    // MÉTODOS PARA LA INSTANTÁNEA LOCAL (ver services.ClientesLocales)
+    // ----------------------------------------------------------
+
+    public List<Cliente> findAllConDetalle() throws SQLException {
+        return Shards.consultarTodos(SELECT_CON_DETALLE_SQL, Parametros.NINGUNO,
+                Mapeadores.CLIENTE_CON_DETALLE, POR_ID);
+    }
 
-                while (rs.next()){
-                    out.add(mapRow(rs));
+    public void recorrerConDetalle(Consumer<Cliente> destino) throws SQLException {
+        // Como findAllConDetalle pero sin guardar la lista: entrega los clientes (con su
+        // detalle) de uno en uno según llegan, para procesos que recorren millones de filas.
+        // Con autocommit desactivado y fetchSize el driver lee con cursor, de 10.000 en 10.000.
+
+        int nodos = Shards.activo() ? Shards.numShards() : 1;
+        for (int s = 0; s < nodos; s++) {
+            try (Connection con = Shards.activo() ? Shards.getConnection(s) : Db.getReadConnection()) {
+                con.setAutoCommit(false);
+                try (PreparedStatement ps = con.prepareStatement(SELECT_CON_DETALLE_SQL)) {
+                    ps.setFetchSize(10_000);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        FilaMapper<Cliente> mapper = Mapeadores.CLIENTE_CON_DETALLE.para(rs);
+                        while (rs.next()) {
+                            destino.accept(mapper.map(rs));
+                        }
+                    }
                 }
+                con.commit();
             }
-            return out;
         }
     }
 
-    private Cliente mapRow(ResultSet rs) throws SQLException {
+    public List<Cliente> findModificadosDesde(Timestamp desde) throws SQLException {
+        return Shards.consultarTodos(SELECT_MODIFICADOS_SQL, ps -> {
+            ps.setTimestamp(1, desde);
+            ps.setTimestamp(2, desde);
+        }, Mapeadores.CLIENTE_CON_DETALLE, POR_ID);
+    }
 
-        Cliente c = new Cliente(
-                rs.getInt("id"),
-                rs.getString("nombre"),
-                rs.getString("email")
-        );
+    public List<Integer> findAllIds() throws SQLException {
+        return Shards.consultarTodos(SELECT_IDS_SQL, Parametros.NINGUNO,
+                MapeadorFilas.<Integer>de(rs -> rs.getInt(1)), Comparator.naturalOrder());
+    }
+
+    public int maxId() throws SQLException {
+        List<Integer> maximos = Shards.consultarTodos(MAX_ID_SQL, Parametros.NINGUNO,
+                MapeadorFilas.<Integer>de(rs -> rs.getInt(1)), Comparator.naturalOrder());
+        return maximos.get(maximos.size() - 1);
+    }
 
-        return c;
+    /**
+     * Hora actual del servidor de BD. Con shards, la menor de todos ellos
+     * (así ningún cambio queda por detrás de la marca).
+     */
+    public Timestamp ahora() throws SQLException {
+        return Shards.consultarTodos(AHORA_SQL, Parametros.NINGUNO,
+                MapeadorFilas.<Timestamp>de(rs -> rs.getTimestamp(1)), Comparator.naturalOrder()).get(0);
     }
 
 
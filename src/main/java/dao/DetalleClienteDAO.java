@@ -1,17 +1,35 @@
 package dao;
 
 import db.Db;
+import db.FilaMapper;
+import db.MapeadorFilas;
+import db.Parametros;
+import db.Shards;
 import model.DetalleCliente;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DAO para la tabla detalle_cliente.
  *
  * Esta versión NO usa transacciones ni versiones con Connection.
  * Es equivalente al ClienteDAO básico que ya tienes.
+ *
+ * Con shards (PG_SHARDS) cada detalle vive en el mismo shard que su cliente,
+ * porque comparten id.
+ *
+ * Con LV_DETALLE_DIFERIDO (directorio del diario) y tras
+ * {@link #activarEscrituraDiferida()}, update() pasa por
+ * {@link EscrituraDiferidaDetalle}: apunta el cambio y vuelve sin esperar a
+ * la BD. findById/findByIds ven lo pendiente.
  */
 public class DetalleClienteDAO {
 
@@ -32,6 +50,13 @@ public class DetalleClienteDAO {
             WHERE id = ?
             """;
 
+    /** Consulta para obtener de una vez los detalles de varios clientes. */
+    private static final String SELECT_BY_IDS_SQL = """
+            SELECT id, direccion, telefono, notas
+            FROM detalle_cliente
+            WHERE id = ANY(?)
+            """;
+
     /** Consulta para listar todos los detalles (útil para debugging). */
     private static final String SELECT_ALL_SQL = """
             SELECT id, direccion, telefono, notas
@@ -52,6 +77,49 @@ public class DetalleClienteDAO {
             WHERE id = ?
             """;
 
+    /**
+     * Búsqueda de texto en dirección y notas (columna busqueda + índice GIN),
+     * de mejor a peor rango y, a igual rango, por id. Paginación por clave:
+     * la página siguiente empieza después del (rango, id) de la última fila,
+     * sin OFFSET. El fragmento resaltado se calcula solo para las filas de la página.
+     */
+    private static final String BUSCAR_TEXTO_SQL = """
+            SELECT id, rango,
+                   ts_headline('es_sin_acentos',
+                               concat_ws(' · ', direccion, notas), consulta,
+                               'StartSel=«, StopSel=», MaxWords=12, MinWords=4, MaxFragments=2') AS fragmento
+            FROM (
+                SELECT d.id, d.direccion, d.notas, q.consulta, ts_rank(d.busqueda, q.consulta) AS rango
+                FROM detalle_cliente d,
+                     websearch_to_tsquery('es_sin_acentos', ?) AS q (consulta)
+                WHERE d.busqueda @@ q.consulta
+            ) r
+            WHERE rango < ? OR (rango = ? AND id > ?)
+            ORDER BY rango DESC, id
+            LIMIT ?
+            """;
+
+    /** Escritura diferida de update() (LV_DETALLE_DIFERIDO), o null: directo a la BD. */
+    private static final String DIRECTORIO_DIFERIDO = System.getenv().getOrDefault("LV_DETALLE_DIFERIDO", "");
+    private static final boolean FSYNC_DIFERIDO =
+            Boolean.parseBoolean(System.getenv().getOrDefault("LV_DETALLE_DIFERIDO_FSYNC", "false"));
+    private static final int LOTE_DIFERIDO = 500;
+    private static final long INTERVALO_DIFERIDO_MS = 1000;
+    private static volatile EscrituraDiferidaDetalle diferida;
+
+    private static final Comparator<DetalleCliente> POR_ID =
+            Comparator.comparingInt(DetalleCliente::getId);
+
+    /** Resultado de buscarTexto: id del cliente, rango y fragmento con «coincidencias» marcadas. */
+    public record Coincidencia(int id, float rango, String fragmento) {}
+
+    private static final Comparator<Coincidencia> POR_RANGO =
+            Comparator.comparingDouble(Coincidencia::rango).reversed()
+                    .thenComparingInt(Coincidencia::id);
+
+    private static final MapeadorFilas<Coincidencia> COINCIDENCIA = MapeadorFilas.<Coincidencia>de(rs ->
+            new Coincidencia(rs.getInt(1), rs.getFloat(2), rs.getString(3)));
+
     // =========================================================================
     //  MÉTODOS CRUD BÁSICOS
     // =========================================================================
@@ -61,7 +129,7 @@ public class DetalleClienteDAO {
      * IMPORTANTE: el id debe coincidir con un cliente existente (relación 1:1).
      */
     public void insert(DetalleCliente d) throws SQLException {
-        try (Connection con = Db.getConnection();
+        try (Connection con = Db.getConnection(d.getId());
              PreparedStatement pst = con.prepareStatement(INSERT_SQL)) {
 
             pst.setInt(1, d.getId());
@@ -78,14 +146,19 @@ public class DetalleClienteDAO {
      * Devuelve null si no existe.
      */
     public DetalleCliente findById(int id) throws SQLException {
-        try (Connection con = Db.getConnection();
+        EscrituraDiferidaDetalle ed = diferida;
+        DetalleCliente pendiente = ed != null ? ed.pendiente(id) : null;
+        if (pendiente != null) {
+            return pendiente;
+        }
+        try (Connection con = Db.getReadConnection(id);
              PreparedStatement pst = con.prepareStatement(SELECT_BY_ID_SQL)) {
 
             pst.setInt(1, id);
 
             try (ResultSet rs = pst.executeQuery()) {
                 if (rs.next()) {
-                    return mapRow(rs);
+                    return Mapeadores.DETALLE_CLIENTE.para(rs).map(rs);
                 }
                 return null;
             }
@@ -93,29 +166,92 @@ public class DetalleClienteDAO {
     }
 
     /**
-     * Lista todos los detalles cliente.
+     * Detalles de varios clientes, por id, con una consulta (= ANY) por shard.
+     * Los clientes sin detalle no aparecen en el mapa.
      */
-    public List<DetalleCliente> findAll() throws SQLException {
-        List<DetalleCliente> out = new ArrayList<>();
+    public Map<Integer, DetalleCliente> findByIds(Collection<Integer> ids) throws SQLException {
+        Map<Integer, DetalleCliente> out = new HashMap<>();
 
-        try (Connection con = Db.getConnection();
-             PreparedStatement pst = con.prepareStatement(SELECT_ALL_SQL);
-             ResultSet rs = pst.executeQuery()) {
+        for (List<Integer> grupo : Shards.agrupar(ids, Integer::intValue).values()) {
+            try (Connection con = Db.getReadConnection(grupo.get(0));
+                 PreparedStatement pst = con.prepareStatement(SELECT_BY_IDS_SQL)) {
 
-            while (rs.next()) {
-                out.add(mapRow(rs));
+                pst.setArray(1, con.createArrayOf("integer", grupo.toArray()));
+
+                try (ResultSet rs = pst.executeQuery()) {
+                    FilaMapper<DetalleCliente> mapper = Mapeadores.DETALLE_CLIENTE.para(rs);
+                    while (rs.next()) {
+                        DetalleCliente d = mapper.map(rs);
+                        out.put(d.getId(), d);
+                    }
+                }
             }
         }
 
+        // Lo pendiente de volcar es más nuevo que lo de la BD
+        EscrituraDiferidaDetalle ed = diferida;
+        if (ed != null) {
+            for (int id : ids) {
+                DetalleCliente pendiente = ed.pendiente(id);
+                if (pendiente != null) {
+                    out.put(id, pendiente);
+                }
+            }
+        }
         return out;
     }
 
+    /**
+     * Búsqueda de texto (sin distinguir acentos, con stemming en español) en
+     * la dirección y las notas. Admite la sintaxis de búsqueda web: palabras
+     * sueltas, "frase exacta", OR y -excluir.
+     *
+     * Devuelve como mucho {@code limite} coincidencias, de mejor a peor rango.
+     * Para la página siguiente se pasa la última coincidencia recibida como
+     * {@code despuesDe} (null = primera página). Con shards se busca en todos
+     * a la vez y se mezclan los resultados.
+     */
+    public List<Coincidencia> buscarTexto(String texto, Coincidencia despuesDe, int limite) throws SQLException {
+        float rango = despuesDe != null ? despuesDe.rango() : Float.POSITIVE_INFINITY;
+        int id = despuesDe != null ? despuesDe.id() : Integer.MIN_VALUE;
+
+        List<Coincidencia> out = Shards.consultarTodos(BUSCAR_TEXTO_SQL, pst -> {
+            pst.setString(1, texto);
+            pst.setFloat(2, rango);
+            pst.setFloat(3, rango);
+            pst.setInt(4, id);
+            pst.setInt(5, limite);
+        }, COINCIDENCIA, POR_RANGO);
+
+        // Cada shard devuelve hasta 'limite': la página es el principio de la mezcla
+        return out.size() > limite ? new ArrayList<>(out.subList(0, limite)) : out;
+    }
+
+    /**
+     * Lista todos los detalles cliente.
+     */
+    public List<DetalleCliente> findAll() throws SQLException {
+        return Shards.consultarTodos(SELECT_ALL_SQL, Parametros.NINGUNO, Mapeadores.DETALLE_CLIENTE, POR_ID);
+    }
+
     /**
      * Actualiza los datos del detalle.
      * Si id no existe, devuelve 0.
+     *
+     * Con la escritura diferida activa solo lo apunta en el diario y devuelve 1
+     * (no sabe si el id existe: ver EscrituraDiferidaDetalle).
      */
     public int update(DetalleCliente d) throws SQLException {
-        try (Connection con = Db.getConnection();
+        EscrituraDiferidaDetalle ed = diferida;
+        if (ed != null) {
+            try {
+                ed.update(d);
+                return 1;
+            } catch (IOException e) {
+                throw new SQLException("No se pudo apuntar el detalle " + d.getId() + " en el diario", e);
+            }
+        }
+        try (Connection con = Db.getConnection(d.getId());
              PreparedStatement pst = con.prepareStatement(UPDATE_SQL)) {
 
             pst.setString(1, d.getDireccion());
@@ -131,7 +267,7 @@ public class DetalleClienteDAO {
      * Borra un detalle concreto.
      */
     public int deleteById(int id) throws SQLException {
-        try (Connection con = Db.getConnection();
+        try (Connection con = Db.getConnection(id);
              PreparedStatement pst = con.prepareStatement(DELETE_SQL)) {
 
             pst.setInt(1, id);
@@ -139,19 +275,83 @@ public class DetalleClienteDAO {
         }
     }
 
+    /**
+     * Inserta varios detalles de golpe: una transacción y un executeBatch por shard.
+     */
+    public void insertBatch(Collection<DetalleCliente> detalles) throws SQLException {
+        for (List<DetalleCliente> lote : Shards.agrupar(detalles, DetalleCliente::getId).values()) {
+            try (Connection con = Db.getConnection(lote.get(0).getId())) {
+                con.setAutoCommit(false);
+                try (PreparedStatement pst = con.prepareStatement(INSERT_SQL)) {
+                    for (DetalleCliente d : lote) {
+                        pst.setInt(1, d.getId());
+                        pst.setString(2, d.getDireccion());
+                        pst.setString(3, d.getTelefono());
+                        pst.setString(4, d.getNotas());
+                        pst.addBatch();
+                    }
+                    pst.executeBatch();
+                    con.commit();
+                } catch (SQLException e) {
+                    con.rollback();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Actualiza varios detalles de golpe: una transacción y un executeBatch por
+     * shard (o una sola si no hay shards). Devuelve el total de filas afectadas.
+     */
+    public int updateBatch(Collection<DetalleCliente> detalles) throws SQLException {
+        int total = 0;
+        for (List<DetalleCliente> lote : Shards.agrupar(detalles, DetalleCliente::getId).values()) {
+            try (Connection con = Db.getConnection(lote.get(0).getId())) {
+                con.setAutoCommit(false);
+                try (PreparedStatement pst = con.prepareStatement(UPDATE_SQL)) {
+                    for (DetalleCliente d : lote) {
+                        pst.setString(1, d.getDireccion());
+                        pst.setString(2, d.getTelefono());
+                        pst.setString(3, d.getNotas());
+                        pst.setInt(4, d.getId());
+                        pst.addBatch();
+                    }
+                    for (int n : pst.executeBatch()) {
+                        total += Math.max(n, 0);
+                    }
+                    con.commit();
+                } catch (SQLException e) {
+                    con.rollback();
+                    throw e;
+                }
+            }
+        }
+        return total;
+    }
+
     // =========================================================================
-    //  MAPEO ResultSet → DetalleCliente (buenas prácticas)
+    //  ESCRITURA DIFERIDA (opcional)
     // =========================================================================
 
     /**
-     * Convierte una fila de ResultSet en un objeto DetalleCliente.
+     * Activa la escritura diferida si LV_DETALLE_DIFERIDO tiene un directorio
+     * (si no, no hace nada). Se llama al arrancar, con el esquema ya migrado:
+     * lo que quedó en el diario sin volcar se vuelca entonces.
      */
-    private DetalleCliente mapRow(ResultSet rs) throws SQLException {
-        int id = rs.getInt("id");
-        String direccion = rs.getString("direccion");
-        String telefono = rs.getString("telefono");
-        String notas = rs.getString("notas");
+    public static synchronized void activarEscrituraDiferida() throws IOException {
+        if (diferida == null && !DIRECTORIO_DIFERIDO.isBlank()) {
+            diferida = new EscrituraDiferidaDetalle(new DetalleClienteDAO(), Path.of(DIRECTORIO_DIFERIDO),
+                    LOTE_DIFERIDO, INTERVALO_DIFERIDO_MS, FSYNC_DIFERIDO);
+        }
+    }
 
-        return new DetalleCliente(id, direccion, telefono, notas);
+    /** Vuelca lo pendiente y vuelve a escribir directo en la BD. Se llama al parar. */
+    public static synchronized void cerrarEscrituraDiferida() throws IOException {
+        EscrituraDiferidaDetalle ed = diferida;
+        if (ed != null) {
+            diferida = null;
+            ed.close();
+        }
     }
 }
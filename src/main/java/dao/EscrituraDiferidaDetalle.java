@@ -0,0 +1,301 @@
+package dao;
+
+import db.Carga;
+import db.Db;
+import model.DetalleCliente;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Modo "write-behind" opcional para las actualizaciones de detalle_cliente.
+ *
+ * {@link #update(DetalleCliente)} no habla con la BD: apunta el cambio en un
+ * diario local (fichero de solo-añadir) y lo deja en memoria. Varias
+ * actualizaciones del mismo id se funden en la última. Un hilo de fondo
+ * vuelca lo pendiente con {@link DetalleClienteDAO#updateBatch} cuando se
+ * acumulan 'tamanoLote' ids o cada 'intervaloMillis'.
+ *
+ * Durabilidad:
+ *  - sincronizar = false: cada update se escribe en el diario antes de volver.
+ *    Sobrevive a una caída del proceso (los datos ya están en el SO).
+ *  - sincronizar = true: además hace fsync en cada update. Sobrevive a un
+ *    apagón, pero la latencia pasa a ser la del disco.
+ * Al arrancar se releen los segmentos del diario que no llegaron a volcarse.
+ *
+ * Limitación: un update sobre un id sin fila en detalle_cliente se descarta
+ * en silencio (el llamante ya recibió su confirmación).
+ */
+public class EscrituraDiferidaDetalle implements Closeable {
+
+    private static final String PREFIJO = "detalle-";
+    private static final String SUFIJO = ".log";
+
+    private final DetalleClienteDAO dao;
+    private final Path directorio;
+    private final int tamanoLote;
+    private final boolean sincronizar;
+
+    /** Último valor pendiente de cada id (ya escrito en el diario). */
+    private final ConcurrentHashMap<Integer, DetalleCliente> pendientes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "detalle-write-behind");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Protege el diario (escritura y rotación de segmento). */
+    private final Object diario = new Object();
+    /** Solo un volcado a la vez. */
+    private final Object volcado = new Object();
+
+    private FileChannel segmento;
+    private long numSegmento;
+    /** Tras close() no se admiten más updates (protegido por 'diario'). */
+    private boolean cerrado;
+
+    public EscrituraDiferidaDetalle(DetalleClienteDAO dao, Path directorio,
+                                    int tamanoLote, long intervaloMillis,
+                                    boolean sincronizar) throws IOException {
+        this.dao = dao;
+        this.directorio = directorio;
+        this.tamanoLote = tamanoLote;
+        this.sincronizar = sincronizar;
+
+        Files.createDirectories(directorio);
+        recuperar();
+        abrirSegmento(numSegmento + 1);
+
+        programador.scheduleWithFixedDelay(this::volcarSilencioso,
+                0, intervaloMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // =========================================================================
+    //  API
+    // =========================================================================
+
+    /**
+     * Registra la actualización. Cuando vuelve, el cambio está en el diario
+     * y se aplicará en BD en el próximo volcado.
+     *
+     * @throws IllegalStateException si ya se ha llamado a close()
+     */
+    public void update(DetalleCliente d) throws IOException {
+        // Copia: el llamante puede seguir modificando su objeto
+        DetalleCliente copia = new DetalleCliente(d.getId(), d.getDireccion(), d.getTelefono(), d.getNotas());
+        ByteBuffer registro = codificar(copia);
+
+        synchronized (diario) {
+            if (cerrado) {
+                throw new IllegalStateException("La escritura diferida de detalle_cliente ya está cerrada");
+            }
+            while (registro.hasRemaining()) {
+                segmento.write(registro);
+            }
+            if (sincronizar) {
+                segmento.force(false);
+            }
+            pendientes.put(copia.getId(), copia);
+        }
+
+        if (pendientes.size() >= tamanoLote) {
+            try {
+                programador.execute(this::volcarSilencioso);
+            } catch (RejectedExecutionException e) {
+                // close() a la vez que este update: ya está en pendientes y
+                // close() lo vuelca al terminar
+            }
+        }
+    }
+
+    /** Lectura coherente con lo pendiente: primero memoria, luego BD. */
+    public DetalleCliente findById(int id) throws SQLException {
+        DetalleCliente d = pendientes.get(id);
+        return d != null ? d : dao.findById(id);
+    }
+
+    /** Valor pendiente de volcar del id, o null (sin mirar la BD). */
+    public DetalleCliente pendiente(int id) {
+        return pendientes.get(id);
+    }
+
+    public int pendientes() {
+        return pendientes.size();
+    }
+
+    /**
+     * Vuelca a BD todo lo pendiente en este momento.
+     * Si falla, el diario se conserva y se reintenta en el siguiente volcado.
+     */
+    public void volcar() throws IOException, SQLException {
+        synchronized (volcado) {
+            Map<Integer, DetalleCliente> foto;
+            long ultimoSegmentoVolcado;
+
+            // Rotamos el diario: lo que llegue a partir de aquí va al segmento nuevo
+            synchronized (diario) {
+                if (pendientes.isEmpty()) {
+                    return;
+                }
+                foto = new HashMap<>(pendientes);
+                ultimoSegmentoVolcado = numSegmento;
+                abrirSegmento(numSegmento + 1);
+            }
+
+            try (Carga.Ambito a = Db.usar(Carga.LOTE)) {   // no compite con la interfaz
+                dao.updateBatch(foto.values());
+            }
+
+            // Solo quitamos lo que no se ha vuelto a modificar mientras volcábamos
+            foto.forEach(pendientes::remove);
+
+            // Todo lo de los segmentos antiguos ya está en BD
+            for (Path p : segmentos()) {
+                if (numero(p) <= ultimoSegmentoVolcado) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    /** Para el hilo de fondo, vuelca lo pendiente y cierra el diario. */
+    @Override
+    public void close() throws IOException {
+        synchronized (diario) {
+            cerrado = true;
+        }
+        programador.shutdown();
+        try {
+            programador.awaitTermination(10, TimeUnit.SECONDS);
+            volcar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            throw new IOException("No se pudo volcar detalle_cliente pendiente (queda en el diario)", e);
+        } finally {
+            synchronized (diario) {
+                segmento.close();
+            }
+        }
+    }
+
+    private void volcarSilencioso() {
+        try {
+            volcar();
+        } catch (IOException | SQLException e) {
+            // Se reintenta en el siguiente ciclo; el diario conserva los cambios.
+            e.printStackTrace();
+        }
+    }
+
+    // =========================================================================
+    //  DIARIO EN DISCO
+    // =========================================================================
+
+    /** Relee los segmentos existentes (de más antiguo a más nuevo) a memoria. */
+    private void recuperar() throws IOException {
+        for (Path p : segmentos()) {
+            numSegmento = Math.max(numSegmento, numero(p));
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(p));
+            while (buf.remaining() >= 8) {
+                int longitud = buf.getInt();
+                int crc = buf.getInt();
+                if (longitud < 0 || longitud > buf.remaining()) {
+                    break; // registro a medias por una caída: se ignora
+                }
+                ByteBuffer cuerpo = buf.slice(buf.position(), longitud);
+                buf.position(buf.position() + longitud);
+                if (crc32(cuerpo.duplicate()) != crc) {
+                    break;
+                }
+                DetalleCliente d = decodificar(cuerpo);
+                pendientes.put(d.getId(), d);
+            }
+        }
+    }
+
+    private void abrirSegmento(long n) throws IOException {
+        if (segmento != null) {
+            segmento.close();
+        }
+        numSegmento = n;
+        segmento = FileChannel.open(directorio.resolve(PREFIJO + "%06d".formatted(n) + SUFIJO),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segmentos() throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directorio, PREFIJO + "*" + SUFIJO)) {
+            ds.forEach(out::add);
+        }
+        out.sort((a, b) -> Long.compare(numero(a), numero(b)));
+        return out;
+    }
+
+    private static long numero(Path p) {
+        String f = p.getFileName().toString();
+        return Long.parseLong(f.substring(PREFIJO.length(), f.length() - SUFIJO.length()));
+    }
+
+    // Registro: [longitud][crc32][id][direccion][telefono][notas]
+    // cada texto como [bytes UTF-8 o -1 si null][bytes]
+
+    private static ByteBuffer codificar(DetalleCliente d) {
+        byte[][] textos = {utf8(d.getDireccion()), utf8(d.getTelefono()), utf8(d.getNotas())};
+        int longitud = 4;
+        for (byte[] t : textos) {
+            longitud += 4 + (t == null ? 0 : t.length);
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(8 + longitud);
+        buf.putInt(longitud).putInt(0).putInt(d.getId());
+        for (byte[] t : textos) {
+            buf.putInt(t == null ? -1 : t.length);
+            if (t != null) buf.put(t);
+        }
+        buf.putInt(4, crc32(buf.slice(8, longitud)));
+        return buf.flip();
+    }
+
+    private static DetalleCliente decodificar(ByteBuffer buf) {
+        int id = buf.getInt();
+        return new DetalleCliente(id, texto(buf), texto(buf), texto(buf));
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String texto(ByteBuffer buf) {
+        int n = buf.getInt();
+        if (n < 0) return null;
+        byte[] b = new byte[n];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static int crc32(ByteBuffer buf) {
+        CRC32 crc = new CRC32();
+        crc.update(buf);
+        return (int) crc.getValue();
+    }
+}
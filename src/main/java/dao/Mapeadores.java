@@ -0,0 +1,105 @@
+package dao;
+
+import db.MapeadorFilas;
+import model.Cliente;
+import model.DetalleCliente;
+import model.DetallePedido;
+import model.Pedido;
+import model.Producto;
+
+import java.time.LocalDate;
+
+/**
+ * Mapeo ResultSet → entidad, unificado para todos los DAOs.
+ *
+ * Cada mapeador resuelve los índices de sus columnas una vez por ResultSet y
+ * después lee cada fila por índice, sin reflexión ni búsquedas por nombre:
+ *
+ *   FilaMapper<Cliente> m = Mapeadores.CLIENTE.para(rs);
+ *   while (rs.next()) out.add(m.map(rs));
+ *
+ * Las columnas se buscan por nombre (no por posición), así que el orden del
+ * SELECT da igual mientras estén todas.
+ *
+ * Los textos no se comparten entre filas: estos mapeadores están en todos los
+ * listados y compartir cuesta CPU en cada fila (ver app.CosteMapeo). La lista
+ * de larga vida (la instantánea local) comparte los suyos al leerse, por el
+ * offset de su tabla de textos (ver SnapshotClientes).
+ */
+public final class Mapeadores {
+
+    private Mapeadores() {}
+
+    /** Columnas: id, nombre, email, version. */
+    public static final MapeadorFilas<Cliente> CLIENTE = rs -> {
+        int id = rs.findColumn("id");
+        int nombre = rs.findColumn("nombre");
+        int email = rs.findColumn("email");
+        int version = rs.findColumn("version");
+        return fila -> {
+            Cliente c = new Cliente(fila.getInt(id),
+                    fila.getString(nombre), fila.getString(email));
+            c.setVersion(fila.getInt(version));
+            return c;
+        };
+    };
+
+    /**
+     * Cliente + detalle de un LEFT JOIN. Columnas: las de CLIENTE más
+     * detalle_id, direccion, telefono, notas (detalle_id null = sin detalle).
+     */
+    public static final MapeadorFilas<Cliente> CLIENTE_CON_DETALLE = rs -> {
+        var cliente = CLIENTE.para(rs);
+        int detalleId = rs.findColumn("detalle_id");
+        int direccion = rs.findColumn("direccion");
+        int telefono = rs.findColumn("telefono");
+        int notas = rs.findColumn("notas");
+        return fila -> {
+            Cliente c = cliente.map(fila);
+            fila.getInt(detalleId);
+            if (!fila.wasNull()) {
+                c.setDetalle(new DetalleCliente(c.getId(), fila.getString(direccion),
+                        fila.getString(telefono), fila.getString(notas)));
+            }
+            return c;
+        };
+    };
+
+    /** Columnas: id, direccion, telefono, notas. */
+    public static final MapeadorFilas<DetalleCliente> DETALLE_CLIENTE = rs -> {
+        int id = rs.findColumn("id");
+        int direccion = rs.findColumn("direccion");
+        int telefono = rs.findColumn("telefono");
+        int notas = rs.findColumn("notas");
+        return fila -> new DetalleCliente(fila.getInt(id), fila.getString(direccion),
+                fila.getString(telefono), fila.getString(notas));
+    };
+
+    /** Columnas: id, nombre, precio. */
+    public static final MapeadorFilas<Producto> PRODUCTO = rs -> {
+        int id = rs.findColumn("id");
+        int nombre = rs.findColumn("nombre");
+        int precio = rs.findColumn("precio");
+        return fila -> new Producto(fila.getInt(id),
+                fila.getString(nombre), fila.getDouble(precio));
+    };
+
+    /** Columnas: id, cliente_id, fecha. */
+    public static final MapeadorFilas<Pedido> PEDIDO = rs -> {
+        int id = rs.findColumn("id");
+        int clienteId = rs.findColumn("cliente_id");
+        int fecha = rs.findColumn("fecha");
+        return fila -> new Pedido(fila.getInt(id), fila.getInt(clienteId),
+                fila.getObject(fecha, LocalDate.class));
+    };
+
+    /** Columnas: pedido_id, producto_id, cantidad, precio_unit. */
+    public static final MapeadorFilas<DetallePedido> DETALLE_PEDIDO = rs -> {
+        int pedidoId = rs.findColumn("pedido_id");
+        int productoId = rs.findColumn("producto_id");
+        int cantidad = rs.findColumn("cantidad");
+        int precioUnit = rs.findColumn("precio_unit");
+        return fila -> new DetallePedido(fila.getInt(pedidoId), fila.getInt(productoId),
+                fila.getInt(cantidad), fila.getDouble(precioUnit));
+    };
+}
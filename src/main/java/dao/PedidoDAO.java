@@ -0,0 +1,278 @@
+package dao;
+
+import db.Db;
+import db.FilaMapper;
+import db.Parametros;
+import model.DetallePedido;
+import model.Pedido;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DAO para las tablas pedido y detalle_pedido.
+ *
+ * Un Pedido se guarda siempre junto a sus líneas (DetallePedido) en la misma
+ * transacción: o se guarda todo o nada.
+ *
+ * Los pedidos antiguos se archivan en pedido_archivo/detalle_pedido_archivo
+ * (ver services.ArchivadoPedidos). Las lecturas solo miran las tablas
+ * vivas salvo que se pida {@code conArchivo}: entonces se une el archivo.
+ */
+public class PedidoDAO {
+
+    // =========================================================================
+    //  SQL COMO CONSTANTES
+    // =========================================================================
+
+    private static final String INSERT_PEDIDO_SQL = """
+            INSERT INTO pedido (id, cliente_id, fecha)
+            VALUES (?, ?, ?)
+            """;
+
+    private static final String INSERT_LINEA_SQL = """
+            INSERT INTO detalle_pedido (pedido_id, producto_id, cantidad, precio_unit)
+            VALUES (?, ?, ?, ?)
+            """;
+
+    private static final String SELECT_BY_CLIENTE_SQL = """
+            SELECT id, cliente_id, fecha
+            FROM pedido
+            WHERE cliente_id = ?
+            ORDER BY fecha, id
+            """;
+
+    // Con el rango abierto [desde, hasta) sobre fecha, PostgreSQL solo recorre
+    // las particiones mensuales de pedido que se solapan con él.
+    private static final String SELECT_BY_CLIENTE_ENTRE_SQL = """
+            SELECT id, cliente_id, fecha
+            FROM pedido
+            WHERE cliente_id = ? AND fecha >= ? AND fecha < ?
+            ORDER BY fecha, id
+            """;
+
+    private static final String SELECT_BY_CLIENTES_SQL = """
+            SELECT id, cliente_id, fecha
+            FROM pedido
+            WHERE cliente_id = ANY(?)
+            ORDER BY cliente_id, fecha, id
+            """;
+
+    // Variantes que unen el archivo. Un lote de archivado mueve pedido y líneas
+    // en la misma transacción, así que con UNION ALL no salen repetidos.
+    private static final String SELECT_BY_CLIENTE_CON_ARCHIVO_SQL = """
+            SELECT id, cliente_id, fecha FROM pedido WHERE cliente_id = ?
+            UNION ALL
+            SELECT id, cliente_id, fecha FROM pedido_archivo WHERE cliente_id = ?
+            ORDER BY fecha, id
+            """;
+
+    private static final String SELECT_BY_CLIENTE_ENTRE_CON_ARCHIVO_SQL = """
+            SELECT id, cliente_id, fecha FROM pedido
+            WHERE cliente_id = ? AND fecha >= ? AND fecha < ?
+            UNION ALL
+            SELECT id, cliente_id, fecha FROM pedido_archivo
+            WHERE cliente_id = ? AND fecha >= ? AND fecha < ?
+            ORDER BY fecha, id
+            """;
+
+    private static final String SELECT_BY_CLIENTES_CON_ARCHIVO_SQL = """
+            SELECT id, cliente_id, fecha FROM pedido WHERE cliente_id = ANY(?)
+            UNION ALL
+            SELECT id, cliente_id, fecha FROM pedido_archivo WHERE cliente_id = ANY(?)
+            ORDER BY cliente_id, fecha, id
+            """;
+
+    private static final String SELECT_LINEAS_SQL = """
+            SELECT pedido_id, producto_id, cantidad, precio_unit
+            FROM detalle_pedido
+            WHERE pedido_id = ANY(?)
+            ORDER BY pedido_id, producto_id
+            """;
+
+    private static final String SELECT_LINEAS_CON_ARCHIVO_SQL = """
+            SELECT pedido_id, producto_id, cantidad, precio_unit
+            FROM detalle_pedido
+            WHERE pedido_id = ANY(?)
+            UNION ALL
+            SELECT pedido_id, producto_id, cantidad, precio_unit
+            FROM detalle_pedido_archivo
+            WHERE pedido_id = ANY(?)
+            ORDER BY pedido_id, producto_id
+            """;
+
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM pedido";
+
+    // =========================================================================
+    //  ESCRITURA
+    // =========================================================================
+
+    /** Inserta el pedido y todas sus líneas en una transacción. */
+    public void insert(Pedido p) throws SQLException {
+        insertBatch(List.of(p));
+    }
+
+    /**
+     * Inserta varios pedidos con sus líneas en una sola transacción,
+     * usando un executeBatch para pedidos y otro para líneas.
+     */
+    public void insertBatch(List<Pedido> pedidos) throws SQLException {
+        try (Connection con = Db.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement pstPedido = con.prepareStatement(INSERT_PEDIDO_SQL);
+                 PreparedStatement pstLinea = con.prepareStatement(INSERT_LINEA_SQL)) {
+
+                for (Pedido p : pedidos) {
+                    pstPedido.setInt(1, p.getId());
+                    pstPedido.setInt(2, p.getClienteId());
+                    pstPedido.setObject(3, p.getFecha());
+                    pstPedido.addBatch();
+
+                    for (DetallePedido l : p.getLineas()) {
+                        pstLinea.setInt(1, p.getId());
+                        pstLinea.setInt(2, l.getProductoId());
+                        pstLinea.setInt(3, l.getCantidad());
+                        pstLinea.setDouble(4, l.getPrecioUnit());
+                        pstLinea.addBatch();
+                    }
+                }
+                pstPedido.executeBatch();
+                pstLinea.executeBatch();
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // =========================================================================
+    //  LECTURA
+    // =========================================================================
+
+    /** Pedidos de un cliente, con sus líneas, ordenados por fecha. */
+    public List<Pedido> findByCliente(int clienteId) throws SQLException {
+        return findByCliente(clienteId, false);
+    }
+
+    /** Igual, uniendo los pedidos archivados si conArchivo. */
+    public List<Pedido> findByCliente(int clienteId, boolean conArchivo) throws SQLException {
+        if (conArchivo) {
+            return consultarPedidos(SELECT_BY_CLIENTE_CON_ARCHIVO_SQL, pst -> {
+                pst.setInt(1, clienteId);
+                pst.setInt(2, clienteId);
+            }, true);
+        }
+        return consultarPedidos(SELECT_BY_CLIENTE_SQL, pst -> pst.setInt(1, clienteId), false);
+    }
+
+    /**
+     * Pedidos de un cliente con fecha en [desde, hasta), con sus líneas.
+     * Solo consulta las particiones de esos meses.
+     */
+    public List<Pedido> findByCliente(int clienteId, LocalDate desde, LocalDate hasta) throws SQLException {
+        return findByCliente(clienteId, desde, hasta, false);
+    }
+
+    /** Igual, uniendo los pedidos archivados si conArchivo. */
+    public List<Pedido> findByCliente(int clienteId, LocalDate desde, LocalDate hasta, boolean conArchivo)
+            throws SQLException {
+        if (conArchivo) {
+            return consultarPedidos(SELECT_BY_CLIENTE_ENTRE_CON_ARCHIVO_SQL, pst -> {
+                for (int i = 0; i < 2; i++) {
+                    pst.setInt(3 * i + 1, clienteId);
+                    pst.setObject(3 * i + 2, desde);
+                    pst.setObject(3 * i + 3, hasta);
+                }
+            }, true);
+        }
+        return consultarPedidos(SELECT_BY_CLIENTE_ENTRE_SQL, pst -> {
+            pst.setInt(1, clienteId);
+            pst.setObject(2, desde);
+            pst.setObject(3, hasta);
+        }, false);
+    }
+
+    /**
+     * Pedidos (con líneas) de varios clientes a la vez: una consulta para los
+     * pedidos y otra para sus líneas, sea cual sea el número de clientes.
+     * Ordenados por cliente, fecha e id.
+     */
+    public List<Pedido> findByClientes(Collection<Integer> clienteIds) throws SQLException {
+        return findByClientes(clienteIds, false);
+    }
+
+    /** Igual, uniendo los pedidos archivados si conArchivo. */
+    public List<Pedido> findByClientes(Collection<Integer> clienteIds, boolean conArchivo) throws SQLException {
+        if (clienteIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return consultarPedidos(conArchivo ? SELECT_BY_CLIENTES_CON_ARCHIVO_SQL : SELECT_BY_CLIENTES_SQL, pst -> {
+            Array ids = pst.getConnection().createArrayOf("integer", clienteIds.toArray());
+            pst.setArray(1, ids);
+            if (conArchivo) {
+                pst.setArray(2, ids);
+            }
+        }, conArchivo);
+    }
+
+    private List<Pedido> consultarPedidos(String sql, Parametros parametros, boolean conArchivo)
+            throws SQLException {
+        List<Pedido> out = new ArrayList<>();
+
+        try (Connection con = Db.getReadConnection()) {
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                parametros.aplicar(pst);
+                try (ResultSet rs = pst.executeQuery()) {
+                    FilaMapper<Pedido> mapper = Mapeadores.PEDIDO.para(rs);
+                    while (rs.next()) {
+                        out.add(mapper.map(rs));
+                    }
+                }
+            }
+            cargarLineas(con, out, conArchivo);
+        }
+        return out;
+    }
+
+    /** Mayor id usado (0 si la tabla está vacía). */
+    public int maxId() throws SQLException {
+        try (Connection con = Db.getReadConnection();
+             PreparedStatement pst = con.prepareStatement(MAX_ID_SQL);
+             ResultSet rs = pst.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /** Rellena las líneas de todos los pedidos con una sola consulta (= ANY). */
+    private void cargarLineas(Connection con, List<Pedido> pedidos, boolean conArchivo) throws SQLException {
+        if (pedidos.isEmpty()) {
+            return;
+        }
+        Map<Integer, Pedido> porId = new HashMap<>();
+        for (Pedido p : pedidos) {
+            porId.put(p.getId(), p);
+        }
+
+        try (PreparedStatement pst = con.prepareStatement(conArchivo ? SELECT_LINEAS_CON_ARCHIVO_SQL : SELECT_LINEAS_SQL)) {
+            Array ids = con.createArrayOf("integer", porId.keySet().toArray());
+            pst.setArray(1, ids);
+            if (conArchivo) {
+                pst.setArray(2, ids);
+            }
+            try (ResultSet rs = pst.executeQuery()) {
+                FilaMapper<DetallePedido> mapper = Mapeadores.DETALLE_PEDIDO.para(rs);
+                while (rs.next()) {
+                    DetallePedido l = mapper.map(rs);
+                    porId.get(l.getPedidoId()).addLinea(l);
+                }
+            }
+        }
+    }
+}
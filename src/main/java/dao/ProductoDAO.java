@@ -0,0 +1,108 @@
+package dao;
+
+import db.Db;
+import db.FilaMapper;
+import model.Producto;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DAO para la tabla producto.
+ */
+public class ProductoDAO {
+
+    // =========================================================================
+    //  SQL COMO CONSTANTES
+    // =========================================================================
+
+    private static final String INSERT_SQL = """
+            INSERT INTO producto (id, nombre, precio)
+            VALUES (?, ?, ?)
+            """;
+
+    private static final String SELECT_BY_ID_SQL = """
+            SELECT id, nombre, precio
+            FROM producto
+            WHERE id = ?
+            """;
+
+    private static final String SELECT_ALL_SQL = """
+            SELECT id, nombre, precio
+            FROM producto
+            ORDER BY id
+            """;
+
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM producto";
+
+    // =========================================================================
+    //  MÉTODOS CRUD BÁSICOS
+    // =========================================================================
+
+    public void insert(Producto p) throws SQLException {
+        insertBatch(List.of(p));
+    }
+
+    /**
+     * Inserta varios productos en una sola transacción (executeBatch).
+     */
+    public void insertBatch(List<Producto> productos) throws SQLException {
+        try (Connection con = Db.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement pst = con.prepareStatement(INSERT_SQL)) {
+                for (Producto p : productos) {
+                    pst.setInt(1, p.getId());
+                    pst.setString(2, p.getNombre());
+                    pst.setDouble(3, p.getPrecio());
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Devuelve null si no existe.
+     */
+    public Producto findById(int id) throws SQLException {
+        try (Connection con = Db.getReadConnection();
+             PreparedStatement pst = con.prepareStatement(SELECT_BY_ID_SQL)) {
+
+            pst.setInt(1, id);
+
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? Mapeadores.PRODUCTO.para(rs).map(rs) : null;
+            }
+        }
+    }
+
+    public List<Producto> findAll() throws SQLException {
+        List<Producto> out = new ArrayList<>();
+
+        try (Connection con = Db.getReadConnection();
+             PreparedStatement pst = con.prepareStatement(SELECT_ALL_SQL);
+             ResultSet rs = pst.executeQuery()) {
+
+            FilaMapper<Producto> mapper = Mapeadores.PRODUCTO.para(rs);
+            while (rs.next()) {
+                out.add(mapper.map(rs));
+            }
+        }
+        return out;
+    }
+
+    /** Mayor id usado (0 si la tabla está vacía). */
+    public int maxId() throws SQLException {
+        try (Connection con = Db.getReadConnection();
+             PreparedStatement pst = con.prepareStatement(MAX_ID_SQL);
+             ResultSet rs = pst.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
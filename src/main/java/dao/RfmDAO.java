@@ -0,0 +1,193 @@
+package dao;
+
+import db.Db;
+
+import java.sql.*;
+
+/**
+ * DAO para las tablas de la segmentación RFM: rfm_cliente (agregados y
+ * puntuaciones por cliente) y rfm_pendiente (pedidos aún sin sumar).
+ *
+ * Todo va al primario, donde están pedido y detalle_pedido. Los agregados se
+ * entregan fila a fila a un {@link Agregados} con tipos primitivos, para
+ * volcarlos directamente en arrays sin crear un objeto por cliente.
+ */
+public class RfmDAO {
+
+    /** Recibe los agregados de un cliente (última compra como epochDay). */
+    @FunctionalInterface
+    public interface Agregados {
+        void aceptar(int clienteId, int ultimaCompra, int frecuencia, double importe);
+    }
+
+    // =========================================================================
+    //  SQL COMO CONSTANTES
+    // =========================================================================
+
+    private static final String SELECT_AGREGADOS_SQL = """
+            SELECT cliente_id, ultima_compra, frecuencia, importe
+            FROM rfm_cliente
+            """;
+
+    // En una sola sentencia (y transacción): saca de la cola hasta ? pedidos,
+    // suma sus líneas, los acumula en rfm_cliente y devuelve los totales nuevos
+    // de cada cliente tocado. SKIP LOCKED deja que dos procesos consuman a la vez.
+    private static final String CONSUMIR_PENDIENTES_SQL = """
+            WITH cola AS (
+                DELETE FROM rfm_pendiente
+                WHERE ctid = ANY(ARRAY(SELECT ctid FROM rfm_pendiente LIMIT ? FOR UPDATE SKIP LOCKED))
+                RETURNING pedido_id, cliente_id, fecha
+            ), importes AS (
+                SELECT pedido_id, sum(cantidad * precio_unit) AS importe
+                FROM detalle_pedido
+                WHERE pedido_id IN (SELECT pedido_id FROM cola)
+                GROUP BY pedido_id
+            ), deltas AS (
+                SELECT c.cliente_id, max(c.fecha) AS ultima, count(*) AS pedidos,
+                       COALESCE(sum(i.importe), 0) AS importe
+                FROM cola c
+                LEFT JOIN importes i ON i.pedido_id = c.pedido_id
+                GROUP BY c.cliente_id
+            )
+            INSERT INTO rfm_cliente AS t (cliente_id, ultima_compra, frecuencia, importe)
+            SELECT cliente_id, ultima, pedidos, importe FROM deltas
+            ON CONFLICT (cliente_id) DO UPDATE
+            SET ultima_compra = GREATEST(t.ultima_compra, EXCLUDED.ultima_compra),
+                frecuencia    = t.frecuencia + EXCLUDED.frecuencia,
+                importe       = t.importe + EXCLUDED.importe
+            RETURNING cliente_id, ultima_compra, frecuencia, importe
+            """;
+
+    // TRUNCATE bloquea la cola hasta el COMMIT: los pedidos que se inserten
+    // mientras tanto esperan y quedan encolados para la siguiente actualización.
+    private static final String VACIAR_SQL = "TRUNCATE rfm_pendiente, rfm_cliente";
+
+    // Con todo el histórico: también los pedidos archivados (pedido_archivo)
+    private static final String RECALCULAR_SQL = """
+            INSERT INTO rfm_cliente (cliente_id, ultima_compra, frecuencia, importe)
+            SELECT p.cliente_id, max(p.fecha), count(*), COALESCE(sum(i.importe), 0)
+            FROM (SELECT id, cliente_id, fecha FROM pedido
+                  UNION ALL
+                  SELECT id, cliente_id, fecha FROM pedido_archivo) p
+            LEFT JOIN (SELECT pedido_id, sum(cantidad * precio_unit) AS importe
+                       FROM (SELECT pedido_id, cantidad, precio_unit FROM detalle_pedido
+                             UNION ALL
+                             SELECT pedido_id, cantidad, precio_unit FROM detalle_pedido_archivo) l
+                       GROUP BY pedido_id) i ON i.pedido_id = p.id
+            GROUP BY p.cliente_id
+            """;
+
+    private static final String UPDATE_PUNTUACIONES_SQL = """
+            UPDATE rfm_cliente t
+            SET r = v.r, f = v.f, m = v.m, segmento = v.segmento
+            FROM unnest(?::integer[], ?::smallint[], ?::smallint[], ?::smallint[], ?::text[])
+                 AS v (cliente_id, r, f, m, segmento)
+            WHERE t.cliente_id = v.cliente_id
+            """;
+
+    /** Filas por sentencia al guardar las puntuaciones. */
+    private static final int LOTE_PUNTUACIONES = 10_000;
+
+    // =========================================================================
+    //  LECTURA
+    // =========================================================================
+
+    /** Entrega todos los agregados guardados (en streaming, sin cargarlos en memoria). */
+    public void leerAgregados(Agregados destino) throws SQLException {
+        try (Connection con = Db.getConnection()) {
+            con.setAutoCommit(false);   // necesario para que el driver use cursor
+            try (PreparedStatement pst = con.prepareStatement(SELECT_AGREGADOS_SQL)) {
+                pst.setFetchSize(10_000);
+                try (ResultSet rs = pst.executeQuery()) {
+                    entregar(rs, destino);
+                }
+            }
+            con.commit();
+        }
+    }
+
+    // =========================================================================
+    //  ESCRITURA
+    // =========================================================================
+
+    /**
+     * Suma a rfm_cliente hasta {@code limite} pedidos de la cola y entrega los
+     * totales actualizados de cada cliente afectado. Devuelve cuántos clientes
+     * ha entregado (0 = la cola estaba vacía).
+     */
+    public int consumirPendientes(int limite, Agregados destino) throws SQLException {
+        try (Connection con = Db.getConnection();
+             PreparedStatement pst = con.prepareStatement(CONSUMIR_PENDIENTES_SQL)) {
+            pst.setInt(1, limite);
+            try (ResultSet rs = pst.executeQuery()) {
+                return entregar(rs, destino);
+            }
+        }
+    }
+
+    /**
+     * Recalcula rfm_cliente desde cero con todo el histórico de pedidos y vacía
+     * la cola, en una transacción. Las puntuaciones quedan a NULL.
+     */
+    public void recalcular() throws SQLException {
+        try (Connection con = Db.getConnection()) {
+            con.setAutoCommit(false);
+            try (Statement st = con.createStatement()) {
+                st.execute(VACIAR_SQL);
+                st.executeUpdate(RECALCULAR_SQL);
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Guarda las puntuaciones de los primeros {@code n} clientes de los arrays
+     * (posición i = cliente ids[i]) en una transacción, por lotes con unnest.
+     */
+    public void guardarPuntuaciones(int[] ids, byte[] r, byte[] f, byte[] m, String[] segmento, int n)
+            throws SQLException {
+        try (Connection con = Db.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement pst = con.prepareStatement(UPDATE_PUNTUACIONES_SQL)) {
+                for (int desde = 0; desde < n; desde += LOTE_PUNTUACIONES) {
+                    int hasta = Math.min(n, desde + LOTE_PUNTUACIONES);
+                    Integer[] vIds = new Integer[hasta - desde];
+                    Short[] vR = new Short[vIds.length];
+                    Short[] vF = new Short[vIds.length];
+                    Short[] vM = new Short[vIds.length];
+                    String[] vSeg = new String[vIds.length];
+                    for (int i = desde; i < hasta; i++) {
+                        vIds[i - desde] = ids[i];
+                        vR[i - desde] = (short) r[i];
+                        vF[i - desde] = (short) f[i];
+                        vM[i - desde] = (short) m[i];
+                        vSeg[i - desde] = segmento[i];
+                    }
+                    pst.setArray(1, con.createArrayOf("integer", vIds));
+                    pst.setArray(2, con.createArrayOf("smallint", vR));
+                    pst.setArray(3, con.createArrayOf("smallint", vF));
+                    pst.setArray(4, con.createArrayOf("smallint", vM));
+                    pst.setArray(5, con.createArrayOf("text", vSeg));
+                    pst.executeUpdate();
+                }
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static int entregar(ResultSet rs, Agregados destino) throws SQLException {
+        int filas = 0;
+        while (rs.next()) {
+            destino.aceptar(rs.getInt(1), (int) rs.getDate(2).toLocalDate().toEpochDay(),
+                    rs.getInt(3), rs.getDouble(4));
+            filas++;
+        }
+        return filas;
+    }
+}
@@ -0,0 +1,244 @@
+package dao;
+
+import model.Cliente;
+import model.DetalleCliente;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instantánea local (fichero binario) de cliente + detalle_cliente.
+ *
+ * Formato (little-endian):
+ *  - Cabecera, 32 bytes: magic, versión, nº registros, reservado,
+ *    marca de tiempo de la BD (ms) y offset de la tabla de textos.
+ *  - Registros de tamaño fijo ordenados por id (sirven de índice por id):
+ *    [id][flags][nombre][email][direccion][telefono][notas][version], 8 enteros,
+ *    donde cada texto es un offset en la tabla de textos (-1 = null).
+ *  - Tabla de textos: [longitud][bytes UTF-8], sin repetir textos iguales.
+ *
+ * Se lee entero a memoria con una sola lectura y se reescribe de forma
+ * atómica: fichero temporal + move. No se mapea (FileChannel.map): en Windows
+ * un fichero mapeado no se puede reemplazar, y el mapeo no se suelta hasta
+ * que el GC recoge el buffer, así que el move de la siguiente sincronización
+ * fallaría. Tampoco se gana nada: leerTodos() recorre el fichero entero.
+ */
+public final class SnapshotClientes {
+
+    private static final int MAGIC = 0x4C56534E; // "LVSN"
+    private static final int VERSION = 2;
+    private static final int CABECERA = 32;
+    private static final int REGISTRO = 8 * 4;
+    private static final int CON_DETALLE = 1;
+
+    private final ByteBuffer buf;
+    private final int registros;
+    private final long marca;
+    private final int textos;
+
+    private SnapshotClientes(ByteBuffer buf) {
+        this.buf = buf;
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        this.registros = buf.getInt(8);
+        this.marca = buf.getLong(16);
+        this.textos = (int) buf.getLong(24);
+    }
+
+    /**
+     * Abre la instantánea. Devuelve null si no existe o no es válida
+     * (en ese caso hay que cargar desde la BD).
+     */
+    public static SnapshotClientes abrir(Path ruta) {
+        if (!Files.isRegularFile(ruta)) {
+            return null;
+        }
+        try (FileChannel ch = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            if (ch.size() < CABECERA || ch.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) {
+                    return null;   // se ha acortado mientras lo leíamos
+                }
+            }
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                return null;
+            }
+            SnapshotClientes s = new SnapshotClientes(buf);
+            if (s.textos != CABECERA + (long) s.registros * REGISTRO || s.textos > ch.size()) {
+                return null;
+            }
+            return s;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Hora de la BD en la que se tomó la instantánea. */
+    public Timestamp marca() {
+        return new Timestamp(marca);
+    }
+
+    public int size() {
+        return registros;
+    }
+
+    /**
+     * Todos los clientes (con detalle si lo tenían), ordenados por id.
+     * Nombres y notas se repiten mucho: en la tabla de textos cada uno está una
+     * sola vez, así que los clientes con el mismo offset comparten el String.
+     */
+    public List<Cliente> leerTodos() {
+        List<Cliente> out = new ArrayList<>(registros);
+        Map<Integer, String> compartidos = new HashMap<>();
+        for (int i = 0; i < registros; i++) {
+            out.add(leer(i, compartidos));
+        }
+        return out;
+    }
+
+    /** Búsqueda binaria sobre los registros (ordenados por id). Null si no está. */
+    public Cliente buscar(int id) {
+        int lo = 0, hi = registros - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int actual = buf.getInt(CABECERA + mid * REGISTRO);
+            if (actual < id) lo = mid + 1;
+            else if (actual > id) hi = mid - 1;
+            else return leer(mid, null);
+        }
+        return null;
+    }
+
+    /** @param compartidos textos ya leídos por offset (null = no compartir) */
+    private Cliente leer(int i, Map<Integer, String> compartidos) {
+        int base = CABECERA + i * REGISTRO;
+        int id = buf.getInt(base);
+        int flags = buf.getInt(base + 4);
+
+        Cliente c = new Cliente(id, compartido(buf.getInt(base + 8), compartidos),
+                texto(buf.getInt(base + 12)));
+        c.setVersion(buf.getInt(base + 28));
+        if ((flags & CON_DETALLE) != 0) {
+            c.setDetalle(new DetalleCliente(id,
+                    texto(buf.getInt(base + 16)),
+                    texto(buf.getInt(base + 20)),
+                    compartido(buf.getInt(base + 24), compartidos)));
+        }
+        return c;
+    }
+
+    private String compartido(int offset, Map<Integer, String> compartidos) {
+        if (compartidos == null || offset < 0) {
+            return texto(offset);
+        }
+        return compartidos.computeIfAbsent(offset, this::texto);
+    }
+
+    private String texto(int offset) {
+        if (offset < 0) {
+            return null;
+        }
+        int pos = textos + offset;
+        int n = buf.getInt(pos);
+        byte[] b = new byte[n];
+        buf.get(pos + 4, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // =========================================================================
+    //  ESCRITURA
+    // =========================================================================
+
+    /**
+     * Escribe la instantánea de forma atómica: o queda la anterior entera
+     * o la nueva entera, nunca un fichero a medias.
+     *
+     * @param clientes ordenados por id
+     * @param marca    hora de la BD a partir de la cual pedir cambios la próxima vez
+     */
+    public static void escribir(Path ruta, List<Cliente> clientes, Timestamp marca) throws IOException {
+        Map<String, Integer> offsets = new HashMap<>();
+        TablaTextos tabla = new TablaTextos();
+
+        ByteBuffer regs = ByteBuffer.allocate(clientes.size() * REGISTRO).order(ByteOrder.LITTLE_ENDIAN);
+        for (Cliente c : clientes) {
+            DetalleCliente d = c.getDetalle();
+            regs.putInt(c.getId());
+            regs.putInt(d != null ? CON_DETALLE : 0);
+            regs.putInt(tabla.texto(c.getNombre(), offsets));
+            regs.putInt(tabla.texto(c.getEmail(), offsets));
+            regs.putInt(d != null ? tabla.texto(d.getDireccion(), offsets) : -1);
+            regs.putInt(d != null ? tabla.texto(d.getTelefono(), offsets) : -1);
+            regs.putInt(d != null ? tabla.texto(d.getNotas(), offsets) : -1);
+            regs.putInt(c.getVersion());
+        }
+
+        ByteBuffer cab = ByteBuffer.allocate(CABECERA).order(ByteOrder.LITTLE_ENDIAN);
+        cab.putInt(MAGIC).putInt(VERSION).putInt(clientes.size()).putInt(0)
+                .putLong(marca.getTime())
+                .putLong(CABECERA + (long) clientes.size() * REGISTRO);
+
+        Path dir = ruta.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, ruta.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer[] partes = {cab.flip(), regs.flip(), tabla.buffer()};
+                // Por el total: con 0 clientes la tabla de textos está vacía
+                long pendiente = partes[0].remaining() + partes[1].remaining() + partes[2].remaining();
+                while (pendiente > 0) {
+                    pendiente -= ch.write(partes);
+                }
+                ch.force(true);
+            }
+            Files.move(tmp, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Tabla de textos en construcción; textos repetidos se guardan una vez. */
+    private static final class TablaTextos {
+        private ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        int texto(String s, Map<String, Integer> offsets) {
+            if (s == null) {
+                return -1;
+            }
+            Integer previo = offsets.get(s);
+            if (previo != null) {
+                return previo;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (buf.remaining() < 4 + b.length) {
+                ByteBuffer mayor = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + 4 + b.length))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                mayor.put(buf.flip());
+                buf = mayor;
+            }
+            int offset = buf.position();
+            buf.putInt(b.length).put(b);
+            offsets.put(s, offset);
+            return offset;
+        }
+
+        ByteBuffer buffer() {
+            return buf.flip();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package db;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Anillo de hash consistente: asigna cada id a un shard.
+ *
+ * Cada shard ocupa varios puntos (nodos virtuales) del anillo, calculados a
+ * partir de su nombre (host:puerto/bd) y no de su posición en la lista. Así,
+ * al añadir o quitar un shard solo cambian de sitio ~1/N de los ids.
+ */
+final class AnilloHash {
+
+    private final TreeMap<Long, Integer> anillo = new TreeMap<>();
+
+    AnilloHash(List<String> nombres, int nodosVirtuales) {
+        for (int s = 0; s < nombres.size(); s++) {
+            for (int v = 0; v < nodosVirtuales; v++) {
+                anillo.put(hash(nombres.get(s) + "#" + v), s);
+            }
+        }
+    }
+
+    /** Índice del shard propietario del id. */
+    int shardDe(int id) {
+        Map.Entry<Long, Integer> e = anillo.ceilingEntry(mezclar(id));
+        return (e != null ? e : anillo.firstEntry()).getValue();
+    }
+
+    /** FNV-1a de 64 bits seguido de la mezcla final de MurmurHash3. */
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mezclar(h);
+    }
+
+    private static long mezclar(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
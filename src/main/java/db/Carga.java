@@ -0,0 +1,54 @@
+package db;
+
+/**
+ * Clases de trabajo contra la BD, de más a menos prioritaria.
+ *
+ * Cada clase tiene su propio compartimento en el control de admisión (ver
+ * {@link Db#usar(Carga)}): máximo de conexiones a la vez, cola de espera
+ * limitada, espera máxima y statement_timeout para sus sentencias.
+ *
+ * Configurable con PG_ADMISION_&lt;CLASE&gt;="concurrencia,cola,esperaMs,timeoutMs"
+ * (p.ej. PG_ADMISION_LOTE="4,16,60000,600000"; timeoutMs 0 = sin límite).
+ */
+public enum Carga {
+
+    /** Acciones del usuario en la interfaz: pocas filas, respuesta inmediata. */
+    INTERACTIVA(16, 64, 2_000, 5_000),
+
+    /** Escrituras masivas: importaciones, generación de datos, rebalanceo. */
+    LOTE(4, 16, 60_000, 600_000),
+
+    /** Lecturas grandes: exportaciones, sincronización completa, informes. */
+    INFORME(2, 8, 30_000, 120_000);
+
+    private final int concurrencia;
+    private final int cola;
+    private final long esperaMs;
+    private final long timeoutMs;
+
+    Carga(int concurrencia, int cola, long esperaMs, long timeoutMs) {
+        String[] v = System.getenv().getOrDefault("PG_ADMISION_" + name(), "").split(",");
+        this.concurrencia = v.length == 4 ? Integer.parseInt(v[0].trim()) : concurrencia;
+        this.cola = v.length == 4 ? Integer.parseInt(v[1].trim()) : cola;
+        this.esperaMs = v.length == 4 ? Long.parseLong(v[2].trim()) : esperaMs;
+        this.timeoutMs = v.length == 4 ? Long.parseLong(v[3].trim()) : timeoutMs;
+    }
+
+    /** Conexiones abiertas a la vez como máximo. */
+    public int concurrencia() { return concurrencia; }
+
+    /** Peticiones que pueden esperar turno; con la cola llena se rechaza al momento. */
+    public int cola() { return cola; }
+
+    /** Tiempo máximo esperando turno antes de rechazar. */
+    public long esperaMs() { return esperaMs; }
+
+    /** statement_timeout de las conexiones de esta clase (0 = sin límite). */
+    public long timeoutMs() { return timeoutMs; }
+
+    /** Ámbito abierto con Db.usar(): al cerrarlo se vuelve a la clase anterior. */
+    public interface Ambito extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,237 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Control de admisión delante de la apertura de conexiones.
+ *
+ *  - Compartimentos por {@link Carga}: cada clase tiene su máximo de conexiones
+ *    y su cola, así un lote o un informe no pueden acaparar la BD.
+ *  - Además hay un máximo total (PG_ADMISION_TOTAL). Cuando queda un hueco se
+ *    da al que espera en la clase más prioritaria que pueda usarlo.
+ *  - Cola llena o espera agotada → SQLTransientConnectionException al momento,
+ *    sin llegar a abrir la conexión.
+ *
+ * Un hilo que ya tiene una conexión abierta no vuelve a pasar por la cola para
+ * abrir otras (p.ej. dos conexiones a la vez para copiar entre shards): si no,
+ * podría quedarse esperando un hueco que él mismo ocupa. Si esa conexión es de
+ * otra clase (un Db.usar anidado), se abre con la clase pedida (su
+ * statement_timeout), pero cuenta en el compartimento del hueco que ya tiene.
+ *
+ * El hueco se libra cuando el hilo cierra su última conexión: por eso las
+ * conexiones se devuelven envueltas en un proxy que avisa en close(). El mismo
+ * proxy puede avisar a quien abrió la conexión (alCerrar).
+ */
+final class ControlAdmision {
+
+    /** Abre la conexión real una vez admitida. */
+    interface Fuente {
+        Connection abrir(Carga clase) throws SQLException;
+    }
+
+    /** Hueco ocupado por un hilo, con cuántas conexiones suyas siguen abiertas. */
+    private static final class Puesto {
+        final Carga clase;
+        int abiertas;
+
+        Puesto(Carga clase) {
+            this.clase = clase;
+            this.abiertas = 1;
+        }
+
+        /** Suma una conexión si el puesto sigue ocupado (false si ya se liberó). */
+        synchronized boolean reservar() {
+            if (abiertas == 0) {
+                return false;
+            }
+            abiertas++;
+            return true;
+        }
+
+        /** Resta una conexión; true si era la última. */
+        synchronized boolean soltar() {
+            return --abiertas == 0;
+        }
+    }
+
+    private final int capacidadTotal;
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition[] turno = new Condition[Carga.values().length];
+    private final int[] enUso = new int[Carga.values().length];
+    private final int[] esperando = new int[Carga.values().length];
+    private int enUsoTotal;
+
+    private final ThreadLocal<Puesto> puestoDelHilo = new ThreadLocal<>();
+
+    ControlAdmision(int capacidadTotal) {
+        this.capacidadTotal = capacidadTotal;
+        for (int i = 0; i < turno.length; i++) {
+            turno[i] = cerrojo.newCondition();
+        }
+    }
+
+    Connection abrir(Carga clase, Fuente fuente) throws SQLException {
+        return abrir(clase, fuente, null);
+    }
+
+    /** Como abrir(clase, fuente), y {@code alCerrar} se ejecuta al cerrar la conexión. */
+    Connection abrir(Carga clase, Fuente fuente, Runnable alCerrar) throws SQLException {
+        Puesto puesto = puestoDelHilo.get();
+        if (puesto == null || !puesto.reservar()) {
+            entrar(clase);
+            puesto = new Puesto(clase);
+            puestoDelHilo.set(puesto);
+        }
+
+        Connection con;
+        try {
+            con = fuente.abrir(clase);
+        } catch (SQLException | RuntimeException e) {
+            soltar(puesto);
+            throw e;
+        }
+        return envolver(con, puesto, alCerrar);
+    }
+
+    private void soltar(Puesto puesto) {
+        if (puesto.soltar()) {
+            liberar(puesto);
+        }
+    }
+
+    // =========================================================================
+    //  COLAS Y PRIORIDAD
+    // =========================================================================
+
+    private void entrar(Carga clase) throws SQLException {
+        int c = clase.ordinal();
+        cerrojo.lock();
+        try {
+            if (puedeEntrar(c)) {
+                ocupar(c);
+                return;
+            }
+            if (esperando[c] >= clase.cola()) {
+                throw new SQLTransientConnectionException(
+                        "BD saturada: cola " + clase + " llena (" + clase.cola() + " en espera)", "53300");
+            }
+
+            esperando[c]++;
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(clase.esperaMs());
+                while (!puedeEntrar(c)) {
+                    if (nanos <= 0) {
+                        throw new SQLTransientConnectionException(
+                                "BD saturada: sin turno " + clase + " tras " + clase.esperaMs() + " ms", "53300");
+                    }
+                    nanos = turno[c].awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Espera de conexión interrumpida", "53300", e);
+            } finally {
+                esperando[c]--;
+                despertar();   // por si al irnos queda un hueco para otra clase
+            }
+            ocupar(c);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    private void liberar(Puesto puesto) {
+        if (puestoDelHilo.get() == puesto) {
+            puestoDelHilo.remove();
+        }
+        cerrojo.lock();
+        try {
+            enUso[puesto.clase.ordinal()]--;
+            enUsoTotal--;
+            despertar();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Hay hueco para la clase c y ninguna clase más prioritaria que pueda
+     * usarlo está esperando.
+     */
+    private boolean puedeEntrar(int c) {
+        if (!hayHueco(c)) {
+            return false;
+        }
+        for (int p = 0; p < c; p++) {
+            if (esperando[p] > 0 && hayHueco(p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hayHueco(int c) {
+        return enUsoTotal < capacidadTotal && enUso[c] < Carga.values()[c].concurrencia();
+    }
+
+    private void ocupar(int c) {
+        enUso[c]++;
+        enUsoTotal++;
+    }
+
+    /** Avisa a la clase más prioritaria que espera y puede entrar. */
+    private void despertar() {
+        for (int c = 0; c < turno.length; c++) {
+            if (esperando[c] > 0 && hayHueco(c)) {
+                turno[c].signal();
+                return;
+            }
+        }
+    }
+
+    // =========================================================================
+    //  PROXY: libera el hueco al cerrar
+    // =========================================================================
+
+    private Connection envolver(Connection con, Puesto puesto, Runnable alCerrar) {
+        InvocationHandler h = new InvocationHandler() {
+            private boolean cerrada;
+
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                if (m.getName().equals("close") && m.getParameterCount() == 0) {
+                    synchronized (this) {
+                        if (cerrada) {
+                            return null;
+                        }
+                        cerrada = true;
+                    }
+                    try {
+                        con.close();
+                    } finally {
+                        if (alCerrar != null) {
+                            alCerrar.run();
+                        }
+                        soltar(puesto);
+                    }
+                    return null;
+                }
+                try {
+                    return m.invoke(con, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, h);
+    }
+}
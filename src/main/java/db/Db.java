@@ -3,8 +3,33 @@ package db;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
+/**
+ * Punto único de obtención de conexiones JDBC.
+ *
+ *  - getConnection(): primario (escrituras y lecturas que deben ver lo último).
+ *  - getReadConnection(): réplicas de lectura si están configuradas en
+ *    PG_REPLICAS ("host:puerto,host:puerto"); si no, el primario.
+ *
+ * Variables opcionales:
+ *  - PG_READ_BALANCE: "round-robin" (por defecto) o "latency".
+ *  - PG_REPLICA_RETRY_MS: tiempo que una réplica caída queda fuera del reparto.
+ *  - PG_READ_YOUR_WRITES_MS: tras cerrar una conexión al primario, durante este
+ *    tiempo las lecturas también van al primario (0 = desactivado).
+ *
+ * Para repartir cliente/detalle_cliente entre varios servidores, ver {@link Shards}.
+ *
+ * Control de admisión: toda conexión pasa antes por un compartimento según la
+ * {@link Carga} del hilo (INTERACTIVA por defecto). Los trabajos en segundo
+ * plano se declaran con:
+ *
+ *   try (Carga.Ambito a = Db.usar(Carga.LOTE)) { ... }
+ *
+ * PG_ADMISION_TOTAL limita las conexiones abiertas a la vez entre todas las clases.
+ */
 public final class Db {
 
     private static final String HOST = System.getenv().getOrDefault("PG_HOST", "localhost");
@@ -13,18 +38,123 @@ public final class Db {
     private static final String USER = System.getenv().getOrDefault("PG_USER", "postgres");
     private static final String PASS = System.getenv().getOrDefault("PG_PASS", "adminPopo4.");
 
-    private static final String URL = "jdbc:postgresql://" + HOST + ":" + PORT + "/" + DB;
+    private static final String REPLICAS = System.getenv().getOrDefault("PG_REPLICAS", "");
+    private static final String READ_BALANCE = System.getenv().getOrDefault("PG_READ_BALANCE", "round-robin");
+    private static final long REPLICA_RETRY_MS =
+            Long.parseLong(System.getenv().getOrDefault("PG_REPLICA_RETRY_MS", "30000"));
+    private static final long READ_YOUR_WRITES_MS =
+            Long.parseLong(System.getenv().getOrDefault("PG_READ_YOUR_WRITES_MS", "0"));
+
+    private static final String URL = url(HOST + ":" + PORT);
+
+    private static final EnrutadorLecturas LECTURAS = new EnrutadorLecturas(
+            replicas(),
+            READ_BALANCE.equalsIgnoreCase("latency")
+                    ? EnrutadorLecturas.Balanceo.LATENCIA
+                    : EnrutadorLecturas.Balanceo.ROUND_ROBIN,
+            REPLICA_RETRY_MS);
+
+    private static final ControlAdmision ADMISION = new ControlAdmision(
+            Integer.parseInt(System.getenv().getOrDefault("PG_ADMISION_TOTAL", "20")));
+
+    private static final ThreadLocal<Carga> CARGA = ThreadLocal.withInitial(() -> Carga.INTERACTIVA);
+
+    /**
+     * Instante (ms) en que se cerró la última conexión al primario, para
+     * read-your-writes. Al cerrar y no al abrir: una escritura larga (un lote,
+     * una importación) confirma al final, y la ventana debe contar desde ahí.
+     */
+    private static volatile long ultimaEscrituraMillis;
 
     private Db() {}
 
+    /** Conexión al primario. Úsala para INSERT/UPDATE/DELETE. */
     public static Connection getConnection() throws SQLException {
+        if (READ_YOUR_WRITES_MS <= 0) {
+            return abrir(URL);
+        }
+        return ADMISION.abrir(CARGA.get(), clase -> conectar(URL, clase),
+                () -> ultimaEscrituraMillis = System.currentTimeMillis());
+    }
+
+    /**
+     * Conexión para consultas de solo lectura (findAll, search, findById...).
+     * Va a una réplica salvo que no haya, estén todas caídas o estemos
+     * dentro de la ventana read-your-writes.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        if (!LECTURAS.hayReplicas() || dentroVentanaEscritura()) {
+            return abrir(URL);
+        }
+        // La admisión va antes de elegir réplica: la espera en cola no cuenta como latencia
+        return ADMISION.abrir(CARGA.get(), clase -> {
+            Connection con = LECTURAS.abrir(url -> conectar(url, clase));
+            return con != null ? con : conectar(URL, clase);
+        });
+    }
+
+    /**
+     * Conexión al primario que guarda el id. Con shards (PG_SHARDS) es el shard
+     * propietario del id; sin ellos, lo mismo que getConnection().
+     */
+    public static Connection getConnection(int id) throws SQLException {
+        return Shards.activo() ? Shards.getConnection(Shards.shardDe(id)) : getConnection();
+    }
+
+    /** Conexión de lectura para consultar el id (su shard, o las réplicas). */
+    public static Connection getReadConnection(int id) throws SQLException {
+        return Shards.activo() ? Shards.getConnection(Shards.shardDe(id)) : getReadConnection();
+    }
+
+    /**
+     * Marca el trabajo del hilo actual como de la clase dada hasta cerrar el
+     * ámbito (se puede anidar; al cerrar se vuelve a la clase anterior).
+     */
+    public static Carga.Ambito usar(Carga clase) {
+        Carga anterior = CARGA.get();
+        CARGA.set(clase);
+        return () -> CARGA.set(anterior);
+    }
+
+    /** Clase de trabajo del hilo actual (para propagarla a otros hilos). */
+    public static Carga cargaActual() {
+        return CARGA.get();
+    }
+
+    private static boolean dentroVentanaEscritura() {
+        return READ_YOUR_WRITES_MS > 0
+                && System.currentTimeMillis() - ultimaEscrituraMillis < READ_YOUR_WRITES_MS;
+    }
+
+    /** Abre una conexión a la URL pasando por el control de admisión. */
+    static Connection abrir(String url) throws SQLException {
+        return ADMISION.abrir(CARGA.get(), clase -> conectar(url, clase));
+    }
+
+    private static Connection conectar(String url, Carga clase) throws SQLException {
         Properties p = new Properties();
         p.setProperty("user", USER);
         p.setProperty("password", PASS);
-        return DriverManager.getConnection(URL, p );
-
-
+        if (clase.timeoutMs() > 0) {
+            // Se aplica a todas las sentencias de la sesión: una búsqueda desbocada
+            // se cancela en el servidor en vez de ocupar la conexión indefinidamente.
+            p.setProperty("options", "-c statement_timeout=" + clase.timeoutMs());
+        }
+        return DriverManager.getConnection(url, p);
     }
 
+    /** "host:puerto" o "host:puerto/bd" → URL JDBC (si no se indica bd, PG_DB). */
+    static String url(String hostPuerto) {
+        return "jdbc:postgresql://" + hostPuerto + (hostPuerto.contains("/") ? "" : "/" + DB);
+    }
 
+    private static List<Replica> replicas() {
+        List<Replica> out = new ArrayList<>();
+        for (String hp : REPLICAS.split(",")) {
+            if (!hp.isBlank()) {
+                out.add(new Replica(url(hp.trim())));
+            }
+        }
+        return out;
+    }
 }
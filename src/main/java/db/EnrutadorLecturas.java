@@ -0,0 +1,84 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reparte las conexiones de lectura entre las réplicas configuradas.
+ *
+ *  - ROUND_ROBIN: turno rotatorio entre las réplicas disponibles.
+ *  - LATENCIA: primero la réplica con menor latencia media de conexión.
+ *
+ * Si una réplica falla al conectar se marca caída un tiempo y se prueba la
+ * siguiente. Si no queda ninguna, devuelve null y Db usa el primario.
+ */
+final class EnrutadorLecturas {
+
+    enum Balanceo { ROUND_ROBIN, LATENCIA }
+
+    interface Conector {
+        Connection abrir(String url) throws SQLException;
+    }
+
+    private final List<Replica> replicas;
+    private final Balanceo balanceo;
+    private final long penalizacionMillis;
+    private final AtomicInteger turno = new AtomicInteger();
+
+    EnrutadorLecturas(List<Replica> replicas, Balanceo balanceo, long penalizacionMillis) {
+        this.replicas = List.copyOf(replicas);
+        this.balanceo = balanceo;
+        this.penalizacionMillis = penalizacionMillis;
+    }
+
+    boolean hayReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * Abre una conexión contra alguna réplica disponible.
+     * Devuelve null si todas están caídas (el llamante debe ir al primario).
+     */
+    Connection abrir(Conector conector) {
+        for (Replica r : ordenDePrueba()) {
+            long inicio = System.nanoTime();
+            try {
+                Connection con = conector.abrir(r.url);
+                r.registrarExito(System.nanoTime() - inicio);
+                return con;
+            } catch (SQLException e) {
+                r.registrarFallo(System.currentTimeMillis(), penalizacionMillis);
+            }
+        }
+        return null;
+    }
+
+    private List<Replica> ordenDePrueba() {
+        long ahora = System.currentTimeMillis();
+        List<Replica> disponibles = new ArrayList<>(replicas.size());
+        for (Replica r : replicas) {
+            if (r.disponible(ahora)) {
+                disponibles.add(r);
+            }
+        }
+        if (disponibles.size() <= 1) {
+            return disponibles;
+        }
+
+        if (balanceo == Balanceo.LATENCIA) {
+            disponibles.sort(Comparator.comparingDouble(Replica::latenciaMedia));
+            return disponibles;
+        }
+
+        // Round-robin: rotamos la lista según el turno
+        int inicio = Math.floorMod(turno.getAndIncrement(), disponibles.size());
+        List<Replica> orden = new ArrayList<>(disponibles.size());
+        orden.addAll(disponibles.subList(inicio, disponibles.size()));
+        orden.addAll(disponibles.subList(0, inicio));
+        return orden;
+    }
+}
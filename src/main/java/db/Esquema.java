@@ -0,0 +1,430 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Esquema de la BD versionado: tablas, índices y particiones de pedido.
+ *
+ * {@link #migrar()} aplica, en orden, las migraciones que aún no estén en la
+ * tabla esquema_version y después crea las particiones mensuales de pedido que
+ * falten del mes en curso en adelante (las del pasado solo al crear pedido:
+ * después el archivado va borrando las antiguas y no se deben recrear).
+ * Es idempotente: se llama al arrancar la aplicación y las herramientas.
+ *
+ * Con PG_SHARDS el esquema completo se aplica en el primario y en cada shard
+ * (las tablas que no se usan en un nodo simplemente quedan vacías).
+ *
+ * Las migraciones ya publicadas NO se modifican: cualquier cambio va en una
+ * migración nueva al final de la lista.
+ *
+ * Variables opcionales:
+ *  - PG_PEDIDO_MESES_ATRAS: particiones a crear hacia el pasado al crear la
+ *    tabla pedido (por defecto 36).
+ *  - PG_PEDIDO_MESES_ADELANTE: particiones a crear por adelantado (por defecto 3).
+ */
+public final class Esquema {
+
+    private static final int MESES_ATRAS =
+            Integer.parseInt(System.getenv().getOrDefault("PG_PEDIDO_MESES_ATRAS", "36"));
+    private static final int MESES_ADELANTE =
+            Integer.parseInt(System.getenv().getOrDefault("PG_PEDIDO_MESES_ADELANTE", "3"));
+
+    /** Clave del advisory lock: evita que dos procesos migren la misma BD a la vez. */
+    private static final long CERROJO = 0x4C56_4553_5155_454DL; // "LVESQUEM"
+
+    private record Migracion(int version, String descripcion, String sql) {}
+
+    // =========================================================================
+    //  SQL COMO CONSTANTES
+    // =========================================================================
+
+    private static final String VERSION_SQL = """
+            CREATE TABLE IF NOT EXISTS esquema_version (
+                version     integer     PRIMARY KEY,
+                descripcion text        NOT NULL,
+                aplicada_en timestamptz NOT NULL DEFAULT now()
+            )
+            """;
+
+    private static final String APLICADAS_SQL = "SELECT version FROM esquema_version";
+
+    private static final String REGISTRAR_SQL =
+            "INSERT INTO esquema_version (version, descripcion) VALUES (?, ?)";
+
+    private static final String PARTICIONES_SQL = """
+            SELECT crear_particiones_pedido(
+                (date_trunc('month', current_date) - make_interval(months => ?))::date,
+                (date_trunc('month', current_date) + make_interval(months => ?))::date)
+            """;
+
+    private static final List<Migracion> MIGRACIONES = List.of(
+
+            new Migracion(1, "clientes y productos", """
+                    CREATE TABLE IF NOT EXISTS cliente (
+                        id     integer PRIMARY KEY,
+                        nombre text    NOT NULL,
+                        email  text
+                    );
+
+                    CREATE TABLE IF NOT EXISTS detalle_cliente (
+                        id        integer PRIMARY KEY REFERENCES cliente (id) ON DELETE CASCADE,
+                        direccion text,
+                        telefono  text,
+                        notas     text
+                    );
+
+                    CREATE TABLE IF NOT EXISTS producto (
+                        id     integer          PRIMARY KEY,
+                        nombre text             NOT NULL,
+                        precio double precision NOT NULL
+                    );
+                    """),
+
+            // pedido se particiona por meses de fecha. La PK tiene que incluir la
+            // clave de partición, así que es (id, fecha) y detalle_pedido no puede
+            // tener FK a pedido. Tampoco hay FK a cliente: con shards los clientes
+            // viven en otros servidores.
+            // Si ya existía un pedido sin particionar, se convierte copiando las filas.
+            new Migracion(2, "pedido particionado por fecha", """
+                    DO $$
+                    BEGIN
+                        IF (SELECT relkind FROM pg_class WHERE oid = to_regclass('pedido')) = 'r' THEN
+                            ALTER TABLE pedido RENAME TO pedido_sin_particionar;
+                        END IF;
+                    END $$;
+
+                    CREATE TABLE IF NOT EXISTS pedido (
+                        id         integer NOT NULL,
+                        cliente_id integer NOT NULL,
+                        fecha      date    NOT NULL,
+                        PRIMARY KEY (id, fecha)
+                    ) PARTITION BY RANGE (fecha);
+
+                    -- Recoge las fechas sin partición propia; crear_particiones_pedido
+                    -- saca de aquí las filas del mes al crear su partición.
+                    CREATE TABLE IF NOT EXISTS pedido_otros PARTITION OF pedido DEFAULT;
+
+                    CREATE OR REPLACE FUNCTION crear_particiones_pedido(desde date, hasta date)
+                    RETURNS integer LANGUAGE plpgsql AS $f$
+                    DECLARE
+                        mes     date := date_trunc('month', desde)::date;
+                        sig     date;
+                        nombre  text;
+                        creadas integer := 0;
+                    BEGIN
+                        WHILE mes < hasta LOOP
+                            sig := (mes + interval '1 month')::date;
+                            nombre := 'pedido_' || to_char(mes, 'YYYY_MM');
+
+                            IF to_regclass(nombre) IS NULL THEN
+                                -- La partición no se puede crear si DEFAULT tiene filas de
+                                -- ese mes: se apartan, se crea y se vuelven a insertar.
+                                EXECUTE format('CREATE TEMP TABLE pedido_mover AS SELECT * FROM pedido_otros'
+                                               ' WHERE fecha >= %L AND fecha < %L', mes, sig);
+                                DELETE FROM pedido_otros WHERE fecha >= mes AND fecha < sig;
+
+                                EXECUTE format('CREATE TABLE %I PARTITION OF pedido FOR VALUES FROM (%L) TO (%L)',
+                                               nombre, mes, sig);
+
+                                EXECUTE 'INSERT INTO pedido SELECT * FROM pedido_mover';
+                                EXECUTE 'DROP TABLE pedido_mover';
+                                creadas := creadas + 1;
+                            END IF;
+                            mes := sig;
+                        END LOOP;
+                        RETURN creadas;
+                    END $f$;
+
+                    DO $$
+                    BEGIN
+                        IF to_regclass('pedido_sin_particionar') IS NOT NULL THEN
+                            PERFORM crear_particiones_pedido(
+                                (SELECT min(fecha) FROM pedido_sin_particionar),
+                                (SELECT max(fecha) + 1 FROM pedido_sin_particionar));
+                            INSERT INTO pedido (id, cliente_id, fecha)
+                                SELECT id, cliente_id, fecha FROM pedido_sin_particionar;
+                            DROP TABLE pedido_sin_particionar CASCADE;
+                        END IF;
+                    END $$;
+
+                    CREATE TABLE IF NOT EXISTS detalle_pedido (
+                        pedido_id   integer          NOT NULL,
+                        producto_id integer          NOT NULL REFERENCES producto (id),
+                        cantidad    integer          NOT NULL,
+                        precio_unit double precision NOT NULL,
+                        PRIMARY KEY (pedido_id, producto_id)
+                    );
+                    """),
+
+            // Índices de las FK y de las consultas de PedidoDAO.
+            // (cliente_id, fecha) sirve a findByCliente (WHERE cliente_id ORDER BY fecha)
+            // y, al estar en la tabla particionada, se crea en cada partición.
+            // Las líneas por pedido_id ya usan la PK de detalle_pedido.
+            new Migracion(3, "índices de claves ajenas", """
+                    CREATE INDEX IF NOT EXISTS pedido_cliente_fecha_idx ON pedido (cliente_id, fecha);
+                    CREATE INDEX IF NOT EXISTS detalle_pedido_producto_idx ON detalle_pedido (producto_id);
+                    """),
+
+            // Marca de última modificación para la sincronización por deltas de la
+            // instantánea local (ClienteDAO.findModificadosDesde).
+            new Migracion(4, "actualizado_en en cliente y detalle_cliente", """
+                    CREATE OR REPLACE FUNCTION marcar_actualizado() RETURNS trigger
+                    LANGUAGE plpgsql AS $$
+                    BEGIN
+                        NEW.actualizado_en := clock_timestamp();
+                        RETURN NEW;
+                    END $$;
+
+                    ALTER TABLE cliente
+                        ADD COLUMN IF NOT EXISTS actualizado_en timestamptz NOT NULL DEFAULT clock_timestamp();
+                    ALTER TABLE detalle_cliente
+                        ADD COLUMN IF NOT EXISTS actualizado_en timestamptz NOT NULL DEFAULT clock_timestamp();
+
+                    DROP TRIGGER IF EXISTS cliente_actualizado ON cliente;
+                    CREATE TRIGGER cliente_actualizado BEFORE UPDATE ON cliente
+                        FOR EACH ROW EXECUTE FUNCTION marcar_actualizado();
+                    DROP TRIGGER IF EXISTS detalle_cliente_actualizado ON detalle_cliente;
+                    CREATE TRIGGER detalle_cliente_actualizado BEFORE UPDATE ON detalle_cliente
+                        FOR EACH ROW EXECUTE FUNCTION marcar_actualizado();
+
+                    CREATE INDEX IF NOT EXISTS cliente_actualizado_idx ON cliente (actualizado_en);
+                    CREATE INDEX IF NOT EXISTS detalle_cliente_actualizado_idx ON detalle_cliente (actualizado_en);
+                    """),
+
+            // Control de concurrencia optimista: ClienteDAO.update solo escribe si la
+            // versión no ha cambiado desde que se leyó, y la incrementa.
+            new Migracion(5, "versión de cliente", """
+                    ALTER TABLE cliente ADD COLUMN IF NOT EXISTS version integer NOT NULL DEFAULT 0;
+                    """),
+
+            // Segmentación RFM incremental (services.SegmentacionRFM).
+            //  - rfm_cliente: agregados por cliente (última compra, nº de pedidos,
+            //    importe) y las puntuaciones/segmento calculados con ellos.
+            //  - rfm_pendiente: cola de pedidos aún sin sumar, la llena un trigger
+            //    al insertar en pedido (sea cual sea el proceso que inserte).
+            // crear_particiones_pedido se redefine para que las filas que mueve
+            // de pedido_otros a su partición no se vuelvan a encolar.
+            // Los pedidos ya existentes se suman con un recálculo completo.
+            new Migracion(6, "segmentación RFM", """
+                    CREATE TABLE IF NOT EXISTS rfm_cliente (
+                        cliente_id    integer          PRIMARY KEY,
+                        ultima_compra date             NOT NULL,
+                        frecuencia    integer          NOT NULL,
+                        importe       double precision NOT NULL,
+                        r             smallint,
+                        f             smallint,
+                        m             smallint,
+                        segmento      text
+                    );
+
+                    CREATE TABLE IF NOT EXISTS rfm_pendiente (
+                        pedido_id  integer NOT NULL,
+                        cliente_id integer NOT NULL,
+                        fecha      date    NOT NULL
+                    );
+
+                    CREATE OR REPLACE FUNCTION encolar_rfm() RETURNS trigger
+                    LANGUAGE plpgsql AS $$
+                    BEGIN
+                        IF current_setting('lv.sin_rfm', true) IS DISTINCT FROM 'on' THEN
+                            INSERT INTO rfm_pendiente (pedido_id, cliente_id, fecha)
+                            VALUES (NEW.id, NEW.cliente_id, NEW.fecha);
+                        END IF;
+                        RETURN NULL;
+                    END $$;
+
+                    DROP TRIGGER IF EXISTS pedido_rfm ON pedido;
+                    CREATE TRIGGER pedido_rfm AFTER INSERT ON pedido
+                        FOR EACH ROW EXECUTE FUNCTION encolar_rfm();
+
+                    CREATE OR REPLACE FUNCTION crear_particiones_pedido(desde date, hasta date)
+                    RETURNS integer LANGUAGE plpgsql AS $f$
+                    DECLARE
+                        mes     date := date_trunc('month', desde)::date;
+                        sig     date;
+                        nombre  text;
+                        creadas integer := 0;
+                    BEGIN
+                        WHILE mes < hasta LOOP
+                            sig := (mes + interval '1 month')::date;
+                            nombre := 'pedido_' || to_char(mes, 'YYYY_MM');
+
+                            IF to_regclass(nombre) IS NULL THEN
+                                EXECUTE format('CREATE TEMP TABLE pedido_mover AS SELECT * FROM pedido_otros'
+                                               ' WHERE fecha >= %L AND fecha < %L', mes, sig);
+                                DELETE FROM pedido_otros WHERE fecha >= mes AND fecha < sig;
+
+                                EXECUTE format('CREATE TABLE %I PARTITION OF pedido FOR VALUES FROM (%L) TO (%L)',
+                                               nombre, mes, sig);
+
+                                -- Son pedidos que ya estaban: no cuentan otra vez para RFM
+                                PERFORM set_config('lv.sin_rfm', 'on', true);
+                                EXECUTE 'INSERT INTO pedido SELECT * FROM pedido_mover';
+                                PERFORM set_config('lv.sin_rfm', 'off', true);
+                                EXECUTE 'DROP TABLE pedido_mover';
+                                creadas := creadas + 1;
+                            END IF;
+                            mes := sig;
+                        END LOOP;
+                        RETURN creadas;
+                    END $f$;
+                    """),
+
+            // Búsqueda de texto en la dirección y las notas del detalle
+            // (DetalleClienteDAO.buscarTexto). La configuración es_sin_acentos es
+            // la de español con unaccent delante del stemmer: "Peñalver" y
+            // "penalver", o "camión" y "camiones", dan el mismo lexema.
+            // La columna generada pesa más la dirección (A) que las notas (B).
+            new Migracion(7, "búsqueda de texto en detalle_cliente", """
+                    CREATE EXTENSION IF NOT EXISTS unaccent;
+
+                    DO $$
+                    BEGIN
+                        IF NOT EXISTS (SELECT 1 FROM pg_ts_config WHERE cfgname = 'es_sin_acentos') THEN
+                            CREATE TEXT SEARCH CONFIGURATION es_sin_acentos (COPY = spanish);
+                            ALTER TEXT SEARCH CONFIGURATION es_sin_acentos
+                                ALTER MAPPING FOR hword, hword_part, word WITH unaccent, spanish_stem;
+                        END IF;
+                    END $$;
+
+                    ALTER TABLE detalle_cliente ADD COLUMN IF NOT EXISTS busqueda tsvector
+                        GENERATED ALWAYS AS (
+                            setweight(to_tsvector('es_sin_acentos', coalesce(direccion, '')), 'A') ||
+                            setweight(to_tsvector('es_sin_acentos', coalesce(notas, '')), 'B')
+                        ) STORED;
+
+                    CREATE INDEX IF NOT EXISTS detalle_cliente_busqueda_idx
+                        ON detalle_cliente USING gin (busqueda);
+                    """),
+
+            // Archivo de pedidos antiguos (services.ArchivadoPedidos): mismas
+            // columnas que pedido y detalle_pedido, sin particionar. El trabajo
+            // mueve los pedidos por lotes y apunta en archivo_progreso hasta qué
+            // id ha llegado en cada partición, para seguir por ahí si se corta.
+            // Sin FK a producto: el archivo no debe impedir borrar productos.
+            new Migracion(8, "archivo de pedidos", """
+                    CREATE TABLE IF NOT EXISTS pedido_archivo (
+                        id         integer NOT NULL,
+                        cliente_id integer NOT NULL,
+                        fecha      date    NOT NULL,
+                        PRIMARY KEY (id, fecha)
+                    );
+                    CREATE INDEX IF NOT EXISTS pedido_archivo_cliente_fecha_idx
+                        ON pedido_archivo (cliente_id, fecha);
+
+                    CREATE TABLE IF NOT EXISTS detalle_pedido_archivo (
+                        pedido_id   integer          NOT NULL,
+                        producto_id integer          NOT NULL,
+                        cantidad    integer          NOT NULL,
+                        precio_unit double precision NOT NULL,
+                        PRIMARY KEY (pedido_id, producto_id)
+                    );
+
+                    CREATE TABLE IF NOT EXISTS archivo_progreso (
+                        particion      text        PRIMARY KEY,
+                        ultimo_id      integer     NOT NULL,
+                        movidos        bigint      NOT NULL,
+                        actualizado_en timestamptz NOT NULL DEFAULT now()
+                    );
+                    """)
+    );
+
+    private Esquema() {}
+
+    // =========================================================================
+    //  API
+    // =========================================================================
+
+    /** Lleva el primario (y cada shard) a la última versión del esquema. */
+    public static void migrar() throws SQLException {
+        // LOTE: convertir o particionar tablas puede pasar del statement_timeout interactivo
+        try (Carga.Ambito a = Db.usar(Carga.LOTE)) {
+            try (Connection con = Db.getConnection()) {
+                migrar(con);
+            }
+            for (int s = 0; s < Shards.numShards(); s++) {
+                try (Connection con = Shards.getConnection(s)) {
+                    migrar(con);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aplica en una BD las migraciones pendientes y crea las particiones de
+     * pedido que falten, todo en una transacción.
+     *
+     * @return número de migraciones aplicadas
+     */
+    public static int migrar(Connection con) throws SQLException {
+        con.setAutoCommit(false);
+        try (Statement st = con.createStatement()) {
+            st.execute("SELECT pg_advisory_xact_lock(" + CERROJO + ")");
+            st.execute(VERSION_SQL);
+
+            Set<Integer> aplicadas = new HashSet<>();
+            try (ResultSet rs = st.executeQuery(APLICADAS_SQL)) {
+                while (rs.next()) {
+                    aplicadas.add(rs.getInt(1));
+                }
+            }
+
+            // La primera vez (migración 2) se crean también las particiones del pasado
+            boolean pedidoNuevo = !aplicadas.contains(2);
+
+            int nuevas = 0;
+            try (PreparedStatement reg = con.prepareStatement(REGISTRAR_SQL)) {
+                for (Migracion m : MIGRACIONES) {
+                    if (aplicadas.contains(m.version())) {
+                        continue;
+                    }
+                    st.execute(m.sql());
+                    reg.setInt(1, m.version());
+                    reg.setString(2, m.descripcion());
+                    reg.executeUpdate();
+                    nuevas++;
+                }
+            }
+
+            crearParticiones(con, pedidoNuevo ? MESES_ATRAS : 0);
+            con.commit();
+            return nuevas;
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Crea las particiones mensuales de pedido desde el mes actual hasta
+     * MESES_ADELANTE. Las existentes no se tocan. No crea las del pasado: las
+     * que el archivado (services.ArchivadoPedidos) ha vaciado y borrado deben
+     * seguir borradas.
+     *
+     * @return particiones creadas
+     */
+    public static int crearParticiones(Connection con) throws SQLException {
+        return crearParticiones(con, 0);
+    }
+
+    /** Particiones desde {@code mesesAtras} meses antes del actual hasta MESES_ADELANTE. */
+    private static int crearParticiones(Connection con, int mesesAtras) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(PARTICIONES_SQL)) {
+            ps.setInt(1, mesesAtras);
+            ps.setInt(2, MESES_ADELANTE + 1);   // + el mes en curso
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Convierte la fila actual de un ResultSet en un objeto.
+ */
+@FunctionalInterface
+public interface FilaMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,23 @@
+package db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Fábrica de {@link FilaMapper} para un ResultSet concreto.
+ *
+ * {@link #para(ResultSet)} resuelve UNA vez el índice de cada columna por su
+ * nombre (rs.findColumn) y devuelve un FilaMapper que lee por índice. Así, en
+ * un listado de N filas, la búsqueda por nombre se hace una vez y no N veces
+ * por columna.
+ */
+@FunctionalInterface
+public interface MapeadorFilas<T> {
+
+    FilaMapper<T> para(ResultSet rs) throws SQLException;
+
+    /** Para mappers que ya leen por posición (p.ej. rs.getInt(1)). */
+    static <T> MapeadorFilas<T> de(FilaMapper<T> mapper) {
+        return rs -> mapper;
+    }
+}
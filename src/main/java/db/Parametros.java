@@ -0,0 +1,16 @@
+package db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Asigna los parámetros (?) de una sentencia preparada.
+ */
+@FunctionalInterface
+public interface Parametros {
+
+    /** Sentencia sin parámetros. */
+    Parametros NINGUNO = ps -> {};
+
+    void aplicar(PreparedStatement ps) throws SQLException;
+}
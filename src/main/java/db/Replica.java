@@ -0,0 +1,44 @@
+package db;
+
+/**
+ * Estado de una réplica de solo lectura: URL, latencia media observada
+ * y hasta cuándo se considera caída.
+ */
+final class Replica {
+
+    /** Peso de la última medida en la media móvil exponencial de latencia. */
+    private static final double ALFA = 0.2;
+
+    final String url;
+
+    private volatile double latenciaMediaNanos;
+    private volatile long caidaHastaMillis;
+
+    Replica(String url) {
+        this.url = url;
+    }
+
+    boolean disponible(long ahoraMillis) {
+        return ahoraMillis >= caidaHastaMillis;
+    }
+
+    double latenciaMedia() {
+        return latenciaMediaNanos;
+    }
+
+    /** Conexión abierta correctamente: actualiza la latencia media. */
+    void registrarExito(long nanos) {
+        double actual = latenciaMediaNanos;
+        latenciaMediaNanos = actual == 0 ? nanos : actual + ALFA * (nanos - actual);
+        caidaHastaMillis = 0;
+    }
+
+    /** Fallo al conectar: la réplica queda fuera del reparto durante 'penalizacionMillis'. */
+    void registrarFallo(long ahoraMillis, long penalizacionMillis) {
+        caidaHastaMillis = ahoraMillis + penalizacionMillis;
+    }
+
+    @Override public String toString() {
+        return "Replica{url='%s', latenciaMs=%.2f}".formatted(url, latenciaMediaNanos / 1_000_000.0);
+    }
+}
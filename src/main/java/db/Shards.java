@@ -0,0 +1,186 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reparto de las tablas cliente / detalle_cliente entre varios PostgreSQL.
+ *
+ * Se activa con PG_SHARDS="host:puerto[/bd],host:puerto[/bd],...". Cada id vive
+ * en un único shard (anillo de hash consistente); detalle_cliente comparte id
+ * con cliente, así que cliente y su detalle siempre están en el mismo shard.
+ *
+ *  - Operaciones por id (insert, findById, update, deleteById): Db.getConnection(id).
+ *  - Listados y búsquedas: {@link #consultarTodos} lanza la consulta en paralelo
+ *    en todos los shards y mezcla los resultados (k-way merge) por el orden dado.
+ *
+ * Sin PG_SHARDS todo va a la base de datos de Db (y sus réplicas de lectura).
+ */
+public final class Shards {
+
+    private static final String SHARDS = System.getenv().getOrDefault("PG_SHARDS", "");
+    private static final int NODOS_VIRTUALES =
+            Integer.parseInt(System.getenv().getOrDefault("PG_SHARD_VNODES", "128"));
+
+    private static final List<String> NOMBRES = nombres();
+    private static final List<String> URLS = NOMBRES.stream().map(Db::url).toList();
+    private static final AnilloHash ANILLO = new AnilloHash(NOMBRES, NODOS_VIRTUALES);
+
+    /** Hilos para las consultas scatter-gather (daemon: no impiden cerrar la app). */
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "shard-query");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Shards() {}
+
+    public static boolean activo() {
+        return !URLS.isEmpty();
+    }
+
+    public static int numShards() {
+        return URLS.size();
+    }
+
+    /** Shard propietario del id. */
+    public static int shardDe(int id) {
+        return ANILLO.shardDe(id);
+    }
+
+    public static String nombre(int shard) {
+        return NOMBRES.get(shard);
+    }
+
+    /**
+     * Agrupa elementos por el shard de su id (todo en el grupo 0 sin shards),
+     * para escribir cada grupo con una sola conexión/transacción.
+     */
+    public static <T> Map<Integer, List<T>> agrupar(Collection<T> elementos, ToIntFunction<? super T> id) {
+        Map<Integer, List<T>> out = new HashMap<>();
+        for (T e : elementos) {
+            int shard = activo() ? shardDe(id.applyAsInt(e)) : 0;
+            out.computeIfAbsent(shard, k -> new ArrayList<>()).add(e);
+        }
+        return out;
+    }
+
+    /** Conexión directa a un shard concreto. */
+    public static Connection getConnection(int shard) throws SQLException {
+        return Db.abrir(URLS.get(shard));
+    }
+
+    /**
+     * Ejecuta una consulta de lectura en todos los shards a la vez y devuelve
+     * los resultados mezclados según 'orden'.
+     *
+     * La SQL debe devolver las filas ya ordenadas por ese mismo criterio
+     * (p.ej. ORDER BY id), porque la mezcla es un merge de listas ordenadas.
+     */
+    public static <T> List<T> consultarTodos(String sql, Parametros parametros,
+                                             MapeadorFilas<T> mapeador,
+                                             Comparator<? super T> orden) throws SQLException {
+        if (!activo()) {
+            try (Connection con = Db.getReadConnection()) {
+                return consultar(con, sql, parametros, mapeador);
+            }
+        }
+
+        Carga clase = Db.cargaActual();   // los hilos del pool trabajan con la clase de quien llama
+        List<Future<List<T>>> futuros = new ArrayList<>(numShards());
+        for (int s = 0; s < numShards(); s++) {
+            final int shard = s;
+            futuros.add(POOL.submit(() -> {
+                try (Carga.Ambito a = Db.usar(clase);
+                     Connection con = getConnection(shard)) {
+                    return consultar(con, sql, parametros, mapeador);
+                }
+            }));
+        }
+
+        List<List<T>> parciales = new ArrayList<>(futuros.size());
+        try {
+            for (Future<List<T>> f : futuros) {
+                parciales.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            futuros.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new SQLException("Consulta en shards interrumpida", e);
+        } catch (ExecutionException e) {
+            futuros.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof SQLException sqle) {
+                throw sqle;
+            }
+            throw new SQLException("Error consultando shards", e.getCause());
+        }
+
+        return mezclar(parciales, orden);
+    }
+
+    private static <T> List<T> consultar(Connection con, String sql, Parametros parametros,
+                                         MapeadorFilas<T> mapeador) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            parametros.aplicar(ps);
+            List<T> out = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                FilaMapper<T> mapper = mapeador.para(rs);
+                while (rs.next()) {
+                    out.add(mapper.map(rs));
+                }
+            }
+            return out;
+        }
+    }
+
+    /** k-way merge de listas ya ordenadas, con un montículo de tamaño k. */
+    static <T> List<T> mezclar(List<List<T>> listas, Comparator<? super T> orden) {
+        int total = 0;
+        for (List<T> l : listas) {
+            total += l.size();
+        }
+        List<T> out = new ArrayList<>(total);
+
+        // Cada entrada del montículo: {lista, posición}
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, listas.size()),
+                (a, b) -> orden.compare(listas.get(a[0]).get(a[1]), listas.get(b[0]).get(b[1])));
+        for (int i = 0; i < listas.size(); i++) {
+            if (!listas.get(i).isEmpty()) {
+                heap.add(new int[]{i, 0});
+            }
+        }
+        while (!heap.isEmpty()) {
+            int[] cab = heap.poll();
+            List<T> lista = listas.get(cab[0]);
+            out.add(lista.get(cab[1]));
+            if (++cab[1] < lista.size()) {
+                heap.add(cab);
+            }
+        }
+        return out;
+    }
+
+    private static List<String> nombres() {
+        List<String> out = new ArrayList<>();
+        for (String s : SHARDS.split(",")) {
+            if (!s.isBlank()) {
+                out.add(s.trim());
+            }
+        }
+        return out;
+    }
+}
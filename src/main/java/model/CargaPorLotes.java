@@ -0,0 +1,115 @@
+package model;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Carga perezosa y por lotes de las relaciones de Cliente (detalle y pedidos).
+ *
+ * Un listado (findAll, search...) trae solo id, nombre y email y engancha a
+ * todos sus clientes una misma CargaPorLotes. La primera vez que se pide
+ * getDetalle() o getPedidos() de un cliente se cargan, con UNA consulta
+ * (= ANY), los de todo su lote de hermanos: los tamanoLote clientes vecinos
+ * del listado. Los siguientes accesos a ese lote ya salen de memoria.
+ *
+ * Así una tabla que solo pinta 30 filas solo consulta los lotes de esas filas.
+ * La carga es bloqueante (JDBC): una interfaz debe comprobar antes
+ * Cliente.isDetalleCargado() y, si no, pedir el detalle desde otro hilo.
+ *
+ * El listado debe estar ordenado por id (como devuelven los DAOs): se usa para
+ * localizar el lote de un cliente sin guardar su posición en cada objeto.
+ */
+public abstract class CargaPorLotes {
+
+    private final List<Cliente> clientes;
+    private final int tamanoLote;
+    // Lotes ya cargados (1 = sí). Se leen sin cerrojo: el hilo de la interfaz
+    // pregunta por ellos al pintar cada celda mientras otro hilo carga un lote
+    // (con el cerrojo cogido durante toda la consulta). La marca se pone después
+    // de cargar, así quien la ve a 1 ve también los datos.
+    private final AtomicIntegerArray detallesCargados;
+    private final AtomicIntegerArray pedidosCargados;
+
+    protected CargaPorLotes(List<Cliente> clientes, int tamanoLote) {
+        this.clientes = clientes;
+        this.tamanoLote = tamanoLote;
+        int lotes = (clientes.size() + tamanoLote - 1) / tamanoLote;
+        this.detallesCargados = new AtomicIntegerArray(lotes);
+        this.pedidosCargados = new AtomicIntegerArray(lotes);
+    }
+
+    /** Engancha esta carga a todos los clientes del listado. */
+    public void enganchar() {
+        for (Cliente c : clientes) {
+            c.setCarga(this);
+        }
+    }
+
+    /** Rellena con setDetalle el detalle de cada cliente del lote (null si no tiene). */
+    protected abstract void cargarDetalles(List<Cliente> lote) throws SQLException;
+
+    /** Añade con addPedido los pedidos de cada cliente del lote. */
+    protected abstract void cargarPedidos(List<Cliente> lote) throws SQLException;
+
+    void detalles(Cliente c) {
+        int lote = lote(c);
+        if (lote < 0 || detallesCargados.get(lote) == 1) {
+            return;   // lo habitual: sin cerrojo
+        }
+        synchronized (this) {
+            if (detallesCargados.get(lote) == 0) {
+                try {
+                    cargarDetalles(hermanos(lote));
+                } catch (SQLException e) {
+                    throw new IllegalStateException("No se pudo cargar el detalle de los clientes", e);
+                }
+                detallesCargados.set(lote, 1);
+            }
+        }
+    }
+
+    /**
+     * true si el lote del cliente ya tiene el detalle cargado (o no es de este
+     * listado). No bloquea aunque otro hilo esté cargando un lote.
+     */
+    boolean detallesListos(Cliente c) {
+        int lote = lote(c);
+        return lote < 0 || detallesCargados.get(lote) == 1;
+    }
+
+    void pedidos(Cliente c) {
+        int lote = lote(c);
+        if (lote < 0 || pedidosCargados.get(lote) == 1) {
+            return;
+        }
+        synchronized (this) {
+            if (pedidosCargados.get(lote) == 0) {
+                try {
+                    cargarPedidos(hermanos(lote));
+                } catch (SQLException e) {
+                    throw new IllegalStateException("No se pudieron cargar los pedidos de los clientes", e);
+                }
+                pedidosCargados.set(lote, 1);
+            }
+        }
+    }
+
+    private List<Cliente> hermanos(int lote) {
+        int desde = lote * tamanoLote;
+        return clientes.subList(desde, Math.min(clientes.size(), desde + tamanoLote));
+    }
+
+    /** Nº de lote del cliente (búsqueda binaria por id), o -1 si no es de este listado. */
+    private int lote(Cliente c) {
+        int lo = 0, hi = clientes.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = clientes.get(mid).getId();
+            if (id < c.getId()) lo = mid + 1;
+            else if (id > c.getId()) hi = mid - 1;
+            else return clientes.get(mid) == c ? mid / tamanoLote : -1;
+        }
+        return -1;
+    }
+}
@@ -8,25 +8,35 @@ import java.util.List;
  * Relaciones:
  *  - 1:1 con DetalleCliente (detalle opcional ampliado).
  *  - 1:N con Pedido (un cliente hace muchos pedidos).
+ *
+ * Pensada para cargar cientos de miles en memoria: id primitivo y la lista de
+ * pedidos solo se crea al añadir el primero (findAll no trae pedidos).
+ *
+ * En los listados de ClienteDAO, detalle y pedidos se cargan al primer acceso
+ * a getDetalle()/getPedidos(), por lotes de clientes (ver CargaPorLotes).
  */
 public class Cliente {
-    private Integer id;            // PK
+    private int id;                // PK
     private String nombre;
     private String email;
+    private int version;           // control de concurrencia optimista (ver ClienteDAO.update)
 
     // 1:1
     private DetalleCliente detalle; // puede ser null si aún no hay detalle
 
-    // 1:N
-    private List<Pedido> pedidos = new ArrayList<>();
+    // 1:N – null hasta que se añade el primer pedido
+    private List<Pedido> pedidos;
+
+    // Carga perezosa de detalle y pedidos (null = lo que haya es lo que hay)
+    private CargaPorLotes carga;
 
     public Cliente() {}
-    public Cliente(Integer id, String nombre, String email) {
+    public Cliente(int id, String nombre, String email) {
         this.id = id; this.nombre = nombre; this.email = email;
     }
 
-    public Integer getId() { return id; }
-    public void setId(Integer id) { this.id = id; }
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
 
     public String getNombre() { return nombre; }
     public void setNombre(String nombre) { this.nombre = nombre; }
@@ -34,12 +44,40 @@ public class Cliente {
     public String getEmail() { return email; }
     public void setEmail(String email) { this.email = email; }
 
-    public DetalleCliente getDetalle() { return detalle; }
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+
+    public DetalleCliente getDetalle() {
+        if (carga != null) {
+            carga.detalles(this);
+        }
+        return detalle;
+    }
     public void setDetalle(DetalleCliente detalle) { this.detalle = detalle; }
 
-    public List<Pedido> getPedidos() { return pedidos; }
+    /** true si getDetalle() responde sin ir a la BD (ya cargado, o sin carga perezosa). */
+    public boolean isDetalleCargado() {
+        return carga == null || carga.detallesListos(this);
+    }
+
+    /** Pedidos cargados (lista vacía de solo lectura si no hay ninguno). Para añadir, addPedido. */
+    public List<Pedido> getPedidos() {
+        if (carga != null) {
+            carga.pedidos(this);
+        }
+        return pedidos != null ? pedidos : List.of();
+    }
     public void setPedidos(List<Pedido> pedidos) { this.pedidos = pedidos; }
 
+    void setCarga(CargaPorLotes carga) { this.carga = carga; }
+
+    public void addPedido(Pedido p) {
+        if (pedidos == null) {
+            pedidos = new ArrayList<>(4);
+        }
+        pedidos.add(p);
+    }
+
     @Override public String toString() {
         return "Cliente{id=%d, nombre='%s', email='%s'}".formatted(id, nombre, email);
     }
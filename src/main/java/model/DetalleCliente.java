@@ -5,7 +5,7 @@ package model;
  * Clave 1:1: o bien comparte el mismo id que cliente, o lleva FK única a cliente.
  */
 public class DetalleCliente {
-    private Integer id;          // PK (puede ser igual a cliente.id)
+    private int id;              // PK (puede ser igual a cliente.id)
     private String direccion;
     private String telefono;
     private String notas;
@@ -13,12 +13,12 @@ public class DetalleCliente {
     // NO guardamos Cliente aquí para evitar ciclos fuertes en toString/equals
 
     public DetalleCliente() {}
-    public DetalleCliente(Integer id, String direccion, String telefono, String notas) {
+    public DetalleCliente(int id, String direccion, String telefono, String notas) {
         this.id = id; this.direccion = direccion; this.telefono = telefono; this.notas = notas;
     }
 
-    public Integer getId() { return id; }
-    public void setId(Integer id) { this.id = id; }
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
     public String getDireccion() { return direccion; }
     public void setDireccion(String direccion) { this.direccion = direccion; }
     public String getTelefono() { return telefono; }
@@ -5,22 +5,22 @@ package model;
  * PK compuesta (pedido_id, producto_id) en la BBDD.
  */
 public class DetallePedido {
-    private Integer pedidoId;     // FK
-    private Integer productoId;   // FK
+    private int pedidoId;         // FK
+    private int productoId;       // FK
     private int cantidad;
     private double precioUnit;    // redundancia histórica: precio del producto en el momento
 
     public DetallePedido() {}
-    public DetallePedido(Integer pedidoId, Integer productoId, int cantidad, double precioUnit) {
+    public DetallePedido(int pedidoId, int productoId, int cantidad, double precioUnit) {
         this.pedidoId = pedidoId; this.productoId = productoId;
         this.cantidad = cantidad; this.precioUnit = precioUnit;
     }
 
-    public Integer getPedidoId() { return pedidoId; }
-    public void setPedidoId(Integer pedidoId) { this.pedidoId = pedidoId; }
+    public int getPedidoId() { return pedidoId; }
+    public void setPedidoId(int pedidoId) { this.pedidoId = pedidoId; }
 
-    public Integer getProductoId() { return productoId; }
-    public void setProductoId(Integer productoId) { this.productoId = productoId; }
+    public int getProductoId() { return productoId; }
+    public void setProductoId(int productoId) { this.productoId = productoId; }
 
     public int getCantidad() { return cantidad; }
     public void setCantidad(int cantidad) { this.cantidad = cantidad; }
@@ -9,32 +9,44 @@ import java.util.List;
  * Relación N:M con Producto -> lista de DetallePedido.
  */
 public class Pedido {
-    private Integer id;                // PK
-    private Integer clienteId;         // FK a Cliente (lado N de 1:N)
+    private int id;                    // PK
+    private int clienteId;             // FK a Cliente (lado N de 1:N)
     private LocalDate fecha;
 
-    // N:M mediante filas en la tabla detalle_pedido
-    private List<DetallePedido> lineas = new ArrayList<>();
+    // N:M mediante filas en la tabla detalle_pedido – null hasta la primera línea
+    private List<DetallePedido> lineas;
 
     public Pedido() {}
-    public Pedido(Integer id, Integer clienteId, LocalDate fecha) {
+    public Pedido(int id, int clienteId, LocalDate fecha) {
         this.id = id; this.clienteId = clienteId; this.fecha = fecha;
     }
 
-    public Integer getId() { return id; }
-    public void setId(Integer id) { this.id = id; }
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
 
-    public Integer getClienteId() { return clienteId; }
-    public void setClienteId(Integer clienteId) { this.clienteId = clienteId; }
+    public int getClienteId() { return clienteId; }
+    public void setClienteId(int clienteId) { this.clienteId = clienteId; }
 
     public LocalDate getFecha() { return fecha; }
     public void setFecha(LocalDate fecha) { this.fecha = fecha; }
 
-    public List<DetallePedido> getLineas() { return lineas; }
+    /** Líneas cargadas (lista vacía de solo lectura si no hay ninguna). Para añadir, addLinea. */
+    public List<DetallePedido> getLineas() { return lineas != null ? lineas : List.of(); }
     public void setLineas(List<DetallePedido> lineas) { this.lineas = lineas; }
 
+    public void addLinea(DetallePedido l) {
+        if (lineas == null) {
+            lineas = new ArrayList<>(4);
+        }
+        lineas.add(l);
+    }
+
     public double getTotal() {
-        return lineas.stream().mapToDouble(DetallePedido::getImporte).sum();
+        double total = 0;
+        for (DetallePedido l : getLineas()) {
+            total += l.getImporte();
+        }
+        return total;
     }
 
     @Override public String toString() {
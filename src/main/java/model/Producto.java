@@ -4,17 +4,17 @@ package model;
  * Producto vendible. Participa en N:M con Pedido a través de DetallePedido.
  */
 public class Producto {
-    private Integer id;     // PK
+    private int id;         // PK
     private String nombre;
     private double precio;
 
     public Producto() {}
-    public Producto(Integer id, String nombre, double precio) {
+    public Producto(int id, String nombre, double precio) {
         this.id = id; this.nombre = nombre; this.precio = precio;
     }
 
-    public Integer getId() { return id; }
-    public void setId(Integer id) { this.id = id; }
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
     public String getNombre() { return nombre; }
     public void setNombre(String nombre) { this.nombre = nombre; }
     public double getPrecio() { return precio; }
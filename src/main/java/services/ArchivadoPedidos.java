@@ -0,0 +1,129 @@
+package services;
+
+import dao.ArchivoPedidosDAO;
+import db.Carga;
+import db.Db;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Archivado de pedidos antiguos: mantiene pequeñas pedido y detalle_pedido
+ * moviendo a pedido_archivo/detalle_pedido_archivo los pedidos cerrados, es
+ * decir, anteriores al corte (primer día del mes actual menos {@code meses}).
+ *
+ *  - Recorre las particiones mensuales que acaban antes del corte y la
+ *    DEFAULT (pedido_otros, solo sus filas anteriores al corte).
+ *  - Mueve los pedidos por lotes de {@code tamanoLote}, cada uno en su
+ *    transacción, con una pausa entre lotes para no acaparar la BD ni
+ *    generar picos de WAL (las réplicas van al día).
+ *  - El progreso queda en archivo_progreso: si se corta, la siguiente
+ *    ejecución sigue desde el último id movido.
+ *  - Las particiones que quedan vacías se separan de pedido y se borran.
+ *
+ * Para leer también lo archivado, ver los métodos de PedidoDAO con conArchivo.
+ *
+ * Variables opcionales (ver {@link #desdeEntorno()}):
+ *  - PG_ARCHIVO_MESES: antigüedad para archivar (por defecto 24).
+ *  - PG_ARCHIVO_LOTE: pedidos por transacción (por defecto 1000).
+ *  - PG_ARCHIVO_PAUSA_MS: pausa entre lotes (por defecto 200).
+ */
+public class ArchivadoPedidos {
+
+    /** Totales de una ejecución. */
+    public record Resultado(long pedidos, long lineas, int particionesBorradas) {}
+
+    /** Cada cuántos lotes se informa del progreso. */
+    private static final int AVISO_CADA = 50;
+
+    private final ArchivoPedidosDAO dao = new ArchivoPedidosDAO();
+    private final int meses;
+    private final int tamanoLote;
+    private final long pausaMs;
+
+    public ArchivadoPedidos(int meses, int tamanoLote, long pausaMs) {
+        this.meses = meses;
+        this.tamanoLote = tamanoLote;
+        this.pausaMs = pausaMs;
+    }
+
+    public static ArchivadoPedidos desdeEntorno() {
+        return new ArchivadoPedidos(
+                Integer.parseInt(System.getenv().getOrDefault("PG_ARCHIVO_MESES", "24")),
+                Integer.parseInt(System.getenv().getOrDefault("PG_ARCHIVO_LOTE", "1000")),
+                Long.parseLong(System.getenv().getOrDefault("PG_ARCHIVO_PAUSA_MS", "200")));
+    }
+
+    /** Primer día que NO se archiva. */
+    public LocalDate corte() {
+        return LocalDate.now().withDayOfMonth(1).minusMonths(meses);
+    }
+
+    /**
+     * Archiva todo lo anterior al corte. {@code progreso} recibe mensajes de
+     * avance (por partición y cada pocos lotes).
+     */
+    public Resultado ejecutar(Consumer<String> progreso) throws SQLException, InterruptedException {
+        LocalDate corte = corte();
+        long pedidos = 0;
+        long lineas = 0;
+        int borradas = 0;
+
+        try (Carga.Ambito a = Db.usar(Carga.LOTE)) {
+            for (ArchivoPedidosDAO.Particion p : dao.particiones()) {
+                boolean mensual = p.hasta() != null;
+                if (mensual && p.hasta().isAfter(corte)) {
+                    continue;   // tiene pedidos que aún no toca archivar
+                }
+
+                long[] movidos = archivarParticion(p.nombre(), corte, progreso);
+                pedidos += movidos[0];
+                lineas += movidos[1];
+
+                if (mensual && dao.soltarParticion(p.nombre())) {
+                    borradas++;
+                    progreso.accept(p.nombre() + ": vacía, separada y borrada");
+                }
+            }
+        }
+        return new Resultado(pedidos, lineas, borradas);
+    }
+
+    /** Mueve por lotes los pedidos de la partición anteriores al corte: {pedidos, líneas}. */
+    private long[] archivarParticion(String particion, LocalDate corte, Consumer<String> progreso)
+            throws SQLException, InterruptedException {
+        int desde = dao.ultimoId(particion);
+        boolean repaso = desde == Integer.MIN_VALUE;
+        long pedidos = 0;
+        long lineas = 0;
+        int lotes = 0;
+
+        while (true) {
+            ArchivoPedidosDAO.Lote lote = dao.moverLote(particion, corte, desde, tamanoLote);
+            if (lote.pedidos() == 0) {
+                if (repaso) {
+                    break;
+                }
+                // Se siguió desde un punto guardado: una pasada desde el principio
+                // recoge los pedidos con id menor que llegaran después
+                desde = Integer.MIN_VALUE;
+                repaso = true;
+                continue;
+            }
+
+            desde = lote.ultimoId();
+            pedidos += lote.pedidos();
+            lineas += lote.lineas();
+            if (++lotes % AVISO_CADA == 0) {
+                progreso.accept(particion + ": " + pedidos + " pedidos archivados (id " + desde + ")");
+            }
+            Thread.sleep(pausaMs);
+        }
+
+        if (pedidos > 0) {
+            progreso.accept(particion + ": " + pedidos + " pedidos y " + lineas + " líneas archivados");
+        }
+        return new long[]{pedidos, lineas};
+    }
+}
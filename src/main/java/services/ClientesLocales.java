@@ -0,0 +1,103 @@
+package services;
+
+import dao.ClienteDAO;
+import dao.SnapshotClientes;
+import db.Carga;
+import db.Db;
+import model.Cliente;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copia local de los clientes (con su detalle) para arrancar sin esperar a la BD.
+ *
+ *  - {@link #cargarLocal()}: lee la instantánea del disco, sin tocar la BD.
+ *  - {@link #sincronizar()}: pide a la BD solo lo modificado desde la
+ *    instantánea (más la lista de ids, para detectar borrados), lo mezcla y
+ *    reescribe la instantánea. Sin instantánea previa hace una carga completa.
+ */
+public class ClientesLocales {
+
+    /**
+     * La marca se retrasa este margen respecto a la hora de la BD: una
+     * transacción que empezó antes y confirmó después lleva un actualizado_en
+     * anterior a la marca. Volver a traer algunas filas repetidas no hace daño.
+     */
+    private static final long MARGEN_MS = 60_000;
+
+    private final ClienteDAO clienteDAO = new ClienteDAO();
+    private final Path ruta;
+
+    public ClientesLocales(Path ruta) {
+        this.ruta = ruta;
+    }
+
+    /** LV_SNAPSHOT o, por defecto, ~/.lampreasvioleta/clientes.snap */
+    public static Path rutaPorDefecto() {
+        String env = System.getenv("LV_SNAPSHOT");
+        return env != null && !env.isBlank()
+                ? Path.of(env)
+                : Path.of(System.getProperty("user.home"), ".lampreasvioleta", "clientes.snap");
+    }
+
+    /** Clientes de la instantánea local (lista vacía si no hay). */
+    public List<Cliente> cargarLocal() {
+        SnapshotClientes snap = SnapshotClientes.abrir(ruta);
+        return snap != null ? snap.leerTodos() : List.of();
+    }
+
+    /** Pone al día la instantánea con la BD y devuelve la lista resultante (ordenada por id). */
+    public List<Cliente> sincronizar() throws SQLException, IOException {
+        try (Carga.Ambito a = Db.usar(Carga.INFORME)) {   // carga completa: no frena a la interfaz
+            return sincronizarInforme();
+        }
+    }
+
+    private List<Cliente> sincronizarInforme() throws SQLException, IOException {
+        Timestamp ahora = clienteDAO.ahora();
+        Timestamp marca = new Timestamp(ahora.getTime() - MARGEN_MS);
+
+        SnapshotClientes snap = SnapshotClientes.abrir(ruta);
+        List<Cliente> lista = snap != null ? mezclar(snap) : null;
+        if (lista == null) {
+            lista = clienteDAO.findAllConDetalle();
+        }
+
+        SnapshotClientes.escribir(ruta, lista, marca);
+        return lista;
+    }
+
+    /**
+     * Recorre a la vez (todas ordenadas por id) la lista de ids actual, los
+     * cambios y la instantánea. Devuelve null si falta algún cliente (p.ej. se
+     * insertó entre las dos consultas): entonces se hace carga completa.
+     */
+    private List<Cliente> mezclar(SnapshotClientes snap) throws SQLException {
+        // Primero los cambios y después los ids: un alta entre ambas consultas
+        // aparece como id sin datos (→ carga completa) y nunca al revés.
+        List<Cliente> cambios = clienteDAO.findModificadosDesde(snap.marca());
+        List<Integer> ids = clienteDAO.findAllIds();
+        List<Cliente> locales = snap.leerTodos();
+
+        List<Cliente> out = new ArrayList<>(ids.size());
+        int c = 0, l = 0;
+        for (int id : ids) {
+            while (c < cambios.size() && cambios.get(c).getId() < id) c++;
+            while (l < locales.size() && locales.get(l).getId() < id) l++;
+
+            if (c < cambios.size() && cambios.get(c).getId() == id) {
+                out.add(cambios.get(c));
+            } else if (l < locales.size() && locales.get(l).getId() == id) {
+                out.add(locales.get(l));
+            } else {
+                return null;
+            }
+        }
+        return out;
+    }
+}
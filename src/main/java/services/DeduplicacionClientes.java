@@ -0,0 +1,567 @@
+package services;
+
+import model.Cliente;
+import model.DetalleCliente;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Detección de clientes duplicados (misma persona dada de alta varias veces:
+ * con y sin acentos, apellidos en otro orden, variantes del email...).
+ *
+ * Comparar todos con todos es O(n²). En su lugar:
+ *
+ *  1) {@link #anadir(Cliente)} recibe los clientes de uno en uno (en streaming,
+ *     sin guardar los objetos) y se queda solo con sus campos normalizados.
+ *  2) Cada cliente recibe unas claves de bloqueo: las bandas LSH de su firma
+ *     MinHash (trigramas del nombre y del usuario del email) más el email y el
+ *     teléfono normalizados. Dos clientes son candidatos si comparten alguna.
+ *  3) Por cada clave se ordenan los clientes (Arrays.parallelSort) y solo se
+ *     comparan los de la misma cubeta, repartiendo las cubetas entre los
+ *     núcleos con fork-join. Las cubetas enormes (p.ej. un nombre muy común)
+ *     no se comparan enteras: se ordenan por email y se compara cada cliente
+ *     con sus VENTANA vecinos.
+ *  4) Las parejas con similitud ≥ umbral se unen (union-find) en grupos; la
+ *     puntuación del grupo es la media de sus parejas.
+ *
+ * Memoria: unos pocos arrays por cliente (cientos de MB para un millón).
+ */
+public class DeduplicacionClientes {
+
+    /** Grupo de clientes que parecen la misma persona, con su puntuación (0..1). */
+    public record Grupo(int[] ids, double puntuacion) {}
+
+    /** Bandas LSH × filas por banda = hashes de la firma MinHash. */
+    private static final int BANDAS = 12;
+    private static final int FILAS = 3;
+    private static final int HASHES = BANDAS * FILAS;
+
+    /** Claves de bloqueo por cliente: las bandas, el email y el teléfono. */
+    private static final int CLAVES = BANDAS + 2;
+    private static final int CLAVE_EMAIL = BANDAS;
+    private static final int CLAVE_TELEFONO = BANDAS + 1;
+
+    /** Clave vacía (campo sin valor): no agrupa a nadie. */
+    private static final int SIN_CLAVE = 0;
+
+    /** Cubetas más grandes se comparan por vecindad (ordenadas por email). */
+    private static final int MAX_CUBETA = 200;
+    private static final int VENTANA = 20;
+
+    /** Tamaño (en entradas ordenadas) por debajo del cual una tarea no se divide. */
+    private static final int UMBRAL_TAREA = 4_096;
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern NO_CIFRA = Pattern.compile("\\D");
+
+    private static final long[] SEMILLAS = new long[HASHES];
+    static {
+        long x = 0x4C56_4445_4455_5031L;
+        for (int i = 0; i < HASHES; i++) {
+            x += 0x9E37_79B9_7F4A_7C15L;
+            SEMILLAS[i] = mezclar(x);
+        }
+    }
+
+    private final double umbral;
+
+    // Campos normalizados por posición de llegada (no por id)
+    private int n;
+    private int[] ids = new int[1024];
+    private String[] nombres = new String[1024];
+    private String[] emails = new String[1024];
+    private long[] telefonos = new long[1024];
+    private int[] direcciones = new int[1024];
+
+    /** Los nombres normalizados se repiten mucho: se guarda una copia de cada uno. */
+    private final Map<String, String> nombresUnicos = new HashMap<>();
+
+    /** @param umbral similitud mínima (0..1) para considerar dos clientes la misma persona */
+    public DeduplicacionClientes(double umbral) {
+        this.umbral = umbral;
+    }
+
+    /** Añade un cliente (con su detalle, si lo tiene). No guarda el objeto. */
+    public void anadir(Cliente c) {
+        if (n == ids.length) {
+            int capacidad = n + (n >> 1);
+            ids = Arrays.copyOf(ids, capacidad);
+            nombres = Arrays.copyOf(nombres, capacidad);
+            emails = Arrays.copyOf(emails, capacidad);
+            telefonos = Arrays.copyOf(telefonos, capacidad);
+            direcciones = Arrays.copyOf(direcciones, capacidad);
+        }
+        DetalleCliente d = c.getDetalle();
+        ids[n] = c.getId();
+        nombres[n] = nombresUnicos.computeIfAbsent(normalizarNombre(c.getNombre()), k -> k);
+        emails[n] = normalizarEmail(c.getEmail());
+        telefonos[n] = d != null ? normalizarTelefono(d.getTelefono()) : 0;
+        direcciones[n] = d != null ? normalizarTexto(d.getDireccion()).hashCode() : 0;
+        n++;
+    }
+
+    /** Clientes añadidos. */
+    public int tamano() {
+        return n;
+    }
+
+    /** Busca los duplicados: grupos de 2 o más, de mayor a menor puntuación. */
+    public List<Grupo> agrupar() {
+        int[] claves = calcularClaves();
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Aristas aristas = new Aristas();
+        BitSet[] comparadosTodos = new BitSet[CLAVES];
+        for (int k = 0; k < CLAVES; k++) {
+            long[] cubetas = ordenarPorClave(claves, k);
+            comparadosTodos[k] = enCubetasPequenas(cubetas);
+            aristas.anadir(pool.invoke(new Comparar(claves, k, cubetas, comparadosTodos, 0, cubetas.length)));
+        }
+        return formarGrupos(aristas);
+    }
+
+    // =========================================================================
+    //  CLAVES DE BLOQUEO (MinHash + LSH, email, teléfono)
+    // =========================================================================
+
+    /** claves[i * CLAVES + k] = clave k del cliente i. En paralelo por cliente. */
+    private int[] calcularClaves() {
+        int[] claves = new int[n * CLAVES];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            long[] firma = firma(i);
+            int base = i * CLAVES;
+            for (int b = 0; b < BANDAS; b++) {
+                long h = b;
+                for (int f = 0; f < FILAS; f++) {
+                    h = mezclar(h * 31 + firma[b * FILAS + f]);
+                }
+                claves[base + b] = noVacia((int) h);
+            }
+            claves[base + CLAVE_EMAIL] = emails[i].isEmpty() ? SIN_CLAVE : noVacia(emails[i].hashCode());
+            claves[base + CLAVE_TELEFONO] = telefonos[i] == 0 ? SIN_CLAVE : noVacia(Long.hashCode(telefonos[i]));
+        });
+        return claves;
+    }
+
+    /** Firma MinHash de los trigramas del nombre y del usuario del email. */
+    private long[] firma(int i) {
+        long[] firma = new long[HASHES];
+        Arrays.fill(firma, Long.MAX_VALUE);
+        for (int t : trigramas(nombres[i])) {
+            minimos(firma, t);
+        }
+        String usuario = usuario(emails[i]);
+        if (!usuario.isEmpty()) {
+            for (int t : trigramas("@" + usuario)) {
+                minimos(firma, t);
+            }
+        }
+        return firma;
+    }
+
+    private static void minimos(long[] firma, int trigrama) {
+        for (int h = 0; h < HASHES; h++) {
+            long v = mezclar(trigrama ^ SEMILLAS[h]);
+            if (v < firma[h]) {
+                firma[h] = v;
+            }
+        }
+    }
+
+    /**
+     * Entradas (clave << 32 | posición) de los clientes con clave k, ordenadas:
+     * los de la misma cubeta quedan seguidos.
+     */
+    private long[] ordenarPorClave(int[] claves, int k) {
+        long[] entradas = new long[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int clave = claves[i * CLAVES + k];
+            if (clave != SIN_CLAVE) {
+                entradas[m++] = ((long) clave << 32) | i;
+            }
+        }
+        entradas = Arrays.copyOf(entradas, m);
+        Arrays.parallelSort(entradas);
+        return entradas;
+    }
+
+    /**
+     * Clientes cuya cubeta (en estas entradas ordenadas) tiene como mucho
+     * MAX_CUBETA miembros, es decir, que se comparan con todos los de su cubeta.
+     */
+    private static BitSet enCubetasPequenas(long[] cubetas) {
+        BitSet out = new BitSet();
+        int inicio = 0;
+        while (inicio < cubetas.length) {
+            int fin = inicio + 1;
+            while (fin < cubetas.length && (cubetas[fin] >>> 32) == (cubetas[inicio] >>> 32)) {
+                fin++;
+            }
+            if (fin - inicio <= MAX_CUBETA) {
+                for (int j = inicio; j < fin; j++) {
+                    out.set((int) cubetas[j]);
+                }
+            }
+            inicio = fin;
+        }
+        return out;
+    }
+
+    // =========================================================================
+    //  COMPARACIÓN EN PARALELO (fork-join por rangos de cubetas)
+    // =========================================================================
+
+    private final class Comparar extends RecursiveTask<Aristas> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] claves;
+        private final int k;
+        private final long[] cubetas;
+        private final BitSet[] comparadosTodos;
+        private final int desde;
+        private final int hasta;
+
+        Comparar(int[] claves, int k, long[] cubetas, BitSet[] comparadosTodos, int desde, int hasta) {
+            this.claves = claves;
+            this.k = k;
+            this.cubetas = cubetas;
+            this.comparadosTodos = comparadosTodos;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Aristas compute() {
+            if (hasta - desde > UMBRAL_TAREA) {
+                // Se parte por el límite de una cubeta, para no cortar ninguna
+                int medio = (desde + hasta) >>> 1;
+                while (medio < hasta && clave(medio) == clave(medio - 1)) {
+                    medio++;
+                }
+                if (medio < hasta) {
+                    Comparar izquierda = new Comparar(claves, k, cubetas, comparadosTodos, desde, medio);
+                    izquierda.fork();
+                    Aristas derecha = new Comparar(claves, k, cubetas, comparadosTodos, medio, hasta).compute();
+                    Aristas out = izquierda.join();
+                    out.anadir(derecha);
+                    return out;
+                }
+            }
+
+            Aristas out = new Aristas();
+            int inicio = desde;
+            while (inicio < hasta) {
+                int fin = inicio + 1;
+                while (fin < hasta && clave(fin) == clave(inicio)) {
+                    fin++;
+                }
+                compararCubeta(inicio, fin, out);
+                inicio = fin;
+            }
+            return out;
+        }
+
+        private void compararCubeta(int inicio, int fin, Aristas out) {
+            int tam = fin - inicio;
+            if (tam < 2) {
+                return;
+            }
+            int[] miembros = new int[tam];
+            for (int j = 0; j < tam; j++) {
+                miembros[j] = (int) cubetas[inicio + j];
+            }
+
+            if (tam <= MAX_CUBETA) {
+                for (int x = 0; x < tam; x++) {
+                    for (int y = x + 1; y < tam; y++) {
+                        comparar(miembros[x], miembros[y], out);
+                    }
+                }
+            } else {
+                Integer[] orden = new Integer[tam];
+                for (int j = 0; j < tam; j++) {
+                    orden[j] = miembros[j];
+                }
+                Arrays.sort(orden, Comparator.comparing(i -> emails[i]));
+                for (int x = 0; x < tam; x++) {
+                    for (int y = x + 1; y < tam && y <= x + VENTANA; y++) {
+                        comparar(orden[x], orden[y], out);
+                    }
+                }
+            }
+        }
+
+        private void comparar(int a, int b, Aristas out) {
+            // Si ya compartían una clave anterior y esa cubeta se comparó entera,
+            // ya se compararon. En una cubeta grande solo se comparan vecinos
+            // (VENTANA), así que puede que no: se comparan ahora.
+            for (int j = 0; j < k; j++) {
+                int ca = claves[a * CLAVES + j];
+                if (ca != SIN_CLAVE && ca == claves[b * CLAVES + j] && comparadosTodos[j].get(a)) {
+                    return;
+                }
+            }
+            double s = similitud(a, b);
+            if (s >= umbral) {
+                out.anadir(a, b, (float) s);
+            }
+        }
+
+        private int clave(int posicion) {
+            return (int) (cubetas[posicion] >>> 32);
+        }
+    }
+
+    /**
+     * Similitud (0..1): media ponderada de los campos que tienen los dos.
+     * Nombre y email por trigramas (tolera erratas y cambios de orden); teléfono
+     * y dirección solo cuentan si coinciden exactamente. Nombre y email iguales
+     * no bastan (hay homónimos con el mismo email de usuario): además tiene que
+     * coincidir el teléfono o la dirección.
+     */
+    private double similitud(int a, int b) {
+        boolean conEmail = !emails[a].isEmpty() && !emails[b].isEmpty();
+        double suma = 0;
+        double peso = conEmail ? 0.8 : 0.5;
+
+        // Primero lo barato: si ni con nombre y email idénticos se llegaría al
+        // umbral, no se calculan trigramas (descarta casi todos los homónimos)
+        if (telefonos[a] != 0 && telefonos[b] != 0) {
+            suma += telefonos[a] == telefonos[b] ? 0.2 : 0;
+            peso += 0.2;
+        }
+        if (direcciones[a] != 0 && direcciones[b] != 0) {
+            suma += direcciones[a] == direcciones[b] ? 0.15 : 0;
+            peso += 0.15;
+        }
+        double maximo = (suma + (conEmail ? 0.8 : 0.5)) / peso;
+        if (maximo < umbral) {
+            return maximo;
+        }
+
+        suma += 0.5 * jaccard(trigramas(nombres[a]), trigramas(nombres[b]));
+        if (conEmail) {
+            suma += 0.3 * (emails[a].equals(emails[b]) ? 1
+                    : 0.9 * jaccard(trigramas(usuario(emails[a])), trigramas(usuario(emails[b]))));
+        }
+        return suma / peso;
+    }
+
+    // =========================================================================
+    //  GRUPOS (union-find)
+    // =========================================================================
+
+    private List<Grupo> formarGrupos(Aristas aristas) {
+        int[] padre = new int[n];
+        for (int i = 0; i < n; i++) {
+            padre[i] = i;
+        }
+        for (int e = 0; e < aristas.n; e++) {
+            int ra = raiz(padre, aristas.a[e]);
+            int rb = raiz(padre, aristas.b[e]);
+            if (ra != rb) {
+                padre[Math.max(ra, rb)] = Math.min(ra, rb);
+            }
+        }
+
+        // Suma de puntuaciones y nº de parejas por grupo (en la raíz)
+        double[] suma = new double[n];
+        int[] parejas = new int[n];
+        for (int e = 0; e < aristas.n; e++) {
+            int r = raiz(padre, aristas.a[e]);
+            suma[r] += aristas.s[e];
+            parejas[r]++;
+        }
+
+        Map<Integer, List<Integer>> miembros = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            int r = raiz(padre, i);
+            if (parejas[r] > 0) {
+                miembros.computeIfAbsent(r, x -> new ArrayList<>()).add(ids[i]);
+            }
+        }
+
+        List<Grupo> grupos = new ArrayList<>(miembros.size());
+        for (Map.Entry<Integer, List<Integer>> e : miembros.entrySet()) {
+            int[] g = e.getValue().stream().mapToInt(Integer::intValue).sorted().toArray();
+            grupos.add(new Grupo(g, suma[e.getKey()] / parejas[e.getKey()]));
+        }
+        grupos.sort(Comparator.comparingDouble(Grupo::puntuacion).reversed()
+                .thenComparingInt(g -> g.ids()[0]));
+        return grupos;
+    }
+
+    private static int raiz(int[] padre, int i) {
+        while (padre[i] != i) {
+            padre[i] = padre[padre[i]];   // compresión a medias
+            i = padre[i];
+        }
+        return i;
+    }
+
+    /** Parejas (a, b, similitud) en arrays de primitivos que crecen. */
+    private static final class Aristas {
+        int n;
+        int[] a = new int[16];
+        int[] b = new int[16];
+        float[] s = new float[16];
+
+        void anadir(int x, int y, float sim) {
+            if (n == a.length) {
+                crecer(n * 2);
+            }
+            a[n] = x;
+            b[n] = y;
+            s[n] = sim;
+            n++;
+        }
+
+        void anadir(Aristas otras) {
+            if (n + otras.n > a.length) {
+                crecer(Math.max(n + otras.n, a.length * 2));
+            }
+            System.arraycopy(otras.a, 0, a, n, otras.n);
+            System.arraycopy(otras.b, 0, b, n, otras.n);
+            System.arraycopy(otras.s, 0, s, n, otras.n);
+            n += otras.n;
+        }
+
+        private void crecer(int capacidad) {
+            a = Arrays.copyOf(a, capacidad);
+            b = Arrays.copyOf(b, capacidad);
+            s = Arrays.copyOf(s, capacidad);
+        }
+    }
+
+    // =========================================================================
+    //  NORMALIZACIÓN
+    // =========================================================================
+
+    /** Sin acentos, en minúsculas, solo letras/dígitos y con las palabras ordenadas. */
+    static String normalizarNombre(String nombre) {
+        String[] palabras = normalizarTexto(nombre).split(" ");
+        Arrays.sort(palabras);
+        return String.join(" ", palabras).trim();
+    }
+
+    /** Sin acentos, en minúsculas, solo letras/dígitos separados por un espacio. */
+    static String normalizarTexto(String s) {
+        if (s == null) {
+            return "";
+        }
+        String sin = MARCAS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sin.toLowerCase()).replaceAll(" ").trim();
+    }
+
+    /**
+     * usuario@dominio sin acentos y en minúsculas; del usuario se quitan los
+     * puntos y lo que va detrás de '+' (maria.garcia+tienda → mariagarcia).
+     */
+    static String normalizarEmail(String email) {
+        if (email == null || email.isBlank()) {
+            return "";
+        }
+        String e = MARCAS.matcher(Normalizer.normalize(email.trim().toLowerCase(), Normalizer.Form.NFD)).replaceAll("");
+        int arroba = e.lastIndexOf('@');
+        if (arroba < 0) {
+            return e;
+        }
+        String usuario = e.substring(0, arroba);
+        int mas = usuario.indexOf('+');
+        if (mas >= 0) {
+            usuario = usuario.substring(0, mas);
+        }
+        String dominio = e.substring(arroba + 1);
+        if (dominio.equals("googlemail.com")) {
+            dominio = "gmail.com";
+        }
+        return usuario.replace(".", "") + "@" + dominio;
+    }
+
+    /** Últimas 9 cifras (sin prefijo internacional) como número; 0 si no hay. */
+    static long normalizarTelefono(String telefono) {
+        if (telefono == null) {
+            return 0;
+        }
+        String cifras = NO_CIFRA.matcher(telefono).replaceAll("");
+        if (cifras.isEmpty()) {
+            return 0;
+        }
+        if (cifras.length() > 9) {
+            cifras = cifras.substring(cifras.length() - 9);
+        }
+        return Long.parseLong(cifras);
+    }
+
+    private static String usuario(String email) {
+        int arroba = email.indexOf('@');
+        return arroba < 0 ? email : email.substring(0, arroba);
+    }
+
+    /** Trigramas (como enteros, ordenados y sin repetir) de " texto ". */
+    private static int[] trigramas(String s) {
+        String t = " " + s + " ";
+        if (t.length() < 3) {
+            return new int[0];
+        }
+        int[] out = new int[t.length() - 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (t.charAt(i) * 31 + t.charAt(i + 1)) * 31 + t.charAt(i + 2);
+        }
+        Arrays.sort(out);
+        int m = 0;
+        for (int i = 0; i < out.length; i++) {
+            if (i == 0 || out[i] != out[i - 1]) {
+                out[m++] = out[i];
+            }
+        }
+        return Arrays.copyOf(out, m);
+    }
+
+    /** Jaccard de dos conjuntos ordenados. */
+    private static double jaccard(int[] x, int[] y) {
+        if (x.length == 0 && y.length == 0) {
+            return 0;
+        }
+        int i = 0, j = 0, comunes = 0;
+        while (i < x.length && j < y.length) {
+            if (x[i] == y[j]) {
+                comunes++;
+                i++;
+                j++;
+            } else if (x[i] < y[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) comunes / (x.length + y.length - comunes);
+    }
+
+    private static int noVacia(int h) {
+        return h == SIN_CLAVE ? 1 : h;
+    }
+
+    /** Mezclador de 64 bits (finalizador de MurmurHash3). */
+    private static long mezclar(long x) {
+        x ^= x >>> 33;
+        x *= 0xFF51_AFD7_ED55_8CCDL;
+        x ^= x >>> 33;
+        x *= 0xC4CE_B9FE_1A85_EC53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
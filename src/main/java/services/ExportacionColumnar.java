@@ -0,0 +1,191 @@
+package services;
+
+import db.Db;
+import db.Shards;
+import services.FormatoColumnar.Columna;
+import services.FormatoColumnar.Tabla;
+import services.FormatoColumnar.Vector;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+/**
+ * Exporta cliente, detalle_cliente, producto, pedido y detalle_pedido (y el
+ * archivo de pedidos) al formato columnar de {@link FormatoColumnar}.
+ *
+ * Cada tabla se lee con un cursor (fetchSize) y se escribe por bloques de
+ * FILAS_POR_BLOQUE filas, así la memoria usada no depende del tamaño de la BD.
+ */
+public class ExportacionColumnar {
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32C crc = new CRC32C();
+    private byte[] comprimido = new byte[1 << 16];
+
+    /** Exporta todas las tablas al fichero indicado. Devuelve el número de filas. */
+    public long exportar(Path fichero) throws IOException, SQLException {
+        long total = 0;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(fichero), 1 << 20))) {
+
+            out.writeInt(FormatoColumnar.MAGIC);
+            out.writeInt(FormatoColumnar.VERSION);
+
+            for (Tabla t : FormatoColumnar.TABLAS) {
+                escribirCabecera(out, t);
+
+                Bloque bloque = new Bloque(t);
+                if (t.porShards() && Shards.activo()) {
+                    for (int s = 0; s < Shards.numShards(); s++) {
+                        try (Connection con = Shards.getConnection(s)) {
+                            total += volcarTabla(con, t, bloque, out);
+                        }
+                    }
+                } else {
+                    try (Connection con = Db.getReadConnection()) {
+                        total += volcarTabla(con, t, bloque, out);
+                    }
+                }
+                escribirBloque(out, bloque);
+                out.writeInt(0);
+            }
+            out.writeByte('E');
+        } finally {
+            deflater.end();
+        }
+        return total;
+    }
+
+    private long volcarTabla(Connection con, Tabla t, Bloque bloque, DataOutputStream out)
+            throws SQLException, IOException {
+        // Ordenado por clave: las diferencias entre ids consecutivos son pequeñas
+        String sql = "SELECT " + t.listaColumnas() + " FROM " + t.nombre() + " ORDER BY 1, 2";
+
+        // Sin autocommit para que el driver use cursor y respete el fetchSize
+        con.setAutoCommit(false);
+        long filas = 0;
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    bloque.anadir(rs);
+                    filas++;
+                    if (bloque.lleno()) {
+                        escribirBloque(out, bloque);
+                    }
+                }
+            }
+        } finally {
+            con.commit();
+        }
+        return filas;
+    }
+
+    private static void escribirCabecera(DataOutputStream out, Tabla t) throws IOException {
+        out.writeByte('T');
+        escribirTexto(out, t.nombre());
+        out.writeByte(t.columnas().size());
+        for (Columna c : t.columnas()) {
+            escribirTexto(out, c.nombre());
+            out.writeByte(c.tipo().ordinal());
+        }
+    }
+
+    private void escribirBloque(DataOutputStream out, Bloque bloque) throws IOException {
+        if (bloque.filas == 0) {
+            return;
+        }
+        out.writeInt(bloque.filas);
+        for (Vector v : bloque.columnas) {
+            byte[] crudo = FormatoColumnar.codificar(v);
+
+            deflater.reset();
+            deflater.setInput(crudo);
+            deflater.finish();
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == comprimido.length) {
+                    comprimido = Arrays.copyOf(comprimido, comprimido.length * 2);
+                }
+                n += deflater.deflate(comprimido, n, comprimido.length - n);
+            }
+
+            crc.reset();
+            crc.update(comprimido, 0, n);
+
+            out.writeInt(crudo.length);
+            out.writeInt(n);
+            out.writeInt((int) crc.getValue());
+            out.write(comprimido, 0, n);
+        }
+        bloque.vaciar();
+    }
+
+    private static void escribirTexto(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(b.length);
+        out.write(b);
+    }
+
+    /** Filas pendientes de escribir, ya separadas por columnas. */
+    private static final class Bloque {
+        final List<Columna> definicion;
+        final Vector[] columnas;
+        int filas;
+
+        Bloque(Tabla t) {
+            definicion = t.columnas();
+            columnas = new Vector[definicion.size()];
+            vaciar();
+        }
+
+        void anadir(ResultSet rs) throws SQLException {
+            for (int c = 0; c < columnas.length; c++) {
+                Vector v = columnas[c];
+                int col = c + 1;
+                switch (v.tipo) {
+                    case INT4 -> v.enteros[filas] = rs.getInt(col);
+                    case FLOAT8 -> v.reales[filas] = rs.getDouble(col);
+                    case TEXT -> v.textos[filas] = rs.getString(col);
+                    case DATE -> {
+                        LocalDate f = rs.getObject(col, LocalDate.class);
+                        if (f != null) v.enteros[filas] = (int) f.toEpochDay();
+                    }
+                }
+                v.nulos[filas] = rs.wasNull();
+                v.filas = filas + 1;
+            }
+            filas++;
+        }
+
+        boolean lleno() {
+            return filas == FormatoColumnar.FILAS_POR_BLOQUE;
+        }
+
+        /** Reutiliza los arrays para el siguiente bloque. */
+        void vaciar() {
+            for (int c = 0; c < columnas.length; c++) {
+                if (columnas[c] == null) {
+                    columnas[c] = new Vector(definicion.get(c).tipo(), FormatoColumnar.FILAS_POR_BLOQUE);
+                }
+                columnas[c].filas = 0;
+            }
+            filas = 0;
+        }
+    }
+}
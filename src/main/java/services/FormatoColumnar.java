@@ -0,0 +1,339 @@
+package services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Formato binario columnar para copias completas de datos (.lvcol).
+ *
+ * Fichero:
+ *   [magic][versión]
+ *   por cada tabla: 'T' [nombre] [nº columnas] ([nombre][tipo])...
+ *                   bloques: [nº filas] y por cada columna
+ *                            [bytes sin comprimir][bytes comprimidos][crc32c][datos]
+ *                   [0] = fin de la tabla
+ *   'E' = fin del fichero
+ *
+ * Dentro de cada columna de un bloque (antes de comprimir con Deflater):
+ *   - [0] sin nulos, o [1] + mapa de bits de nulos
+ *   - INT4 / DATE: diferencia con el valor anterior, zigzag + varint
+ *     (ids consecutivos ocupan 1 byte)
+ *   - FLOAT8: 8 bytes
+ *   - TEXT: [1] diccionario + códigos varint si hay pocos valores distintos,
+ *           o [0] + textos seguidos ([longitud varint][UTF-8])
+ */
+public final class FormatoColumnar {
+
+    static final int MAGIC = 0x4C56434C; // "LVCL"
+    static final int VERSION = 1;
+    static final int FILAS_POR_BLOQUE = 65_536;
+
+    public enum Tipo { INT4, TEXT, DATE, FLOAT8 }
+
+    public record Columna(String nombre, Tipo tipo) {}
+
+    /**
+     * @param porShards true si la tabla se reparte por id entre shards (primera columna = id)
+     */
+    public record Tabla(String nombre, boolean porShards, List<Columna> columnas) {
+        String listaColumnas() {
+            return columnas.stream().map(Columna::nombre).collect(Collectors.joining(", "));
+        }
+    }
+
+    /** Tablas en orden de carga (padres antes que hijos). */
+    public static final List<Tabla> TABLAS = List.of(
+            new Tabla("cliente", true, List.of(
+                    new Columna("id", Tipo.INT4),
+                    new Columna("nombre", Tipo.TEXT),
+                    new Columna("email", Tipo.TEXT),
+                    new Columna("version", Tipo.INT4))),
+            new Tabla("detalle_cliente", true, List.of(
+                    new Columna("id", Tipo.INT4),
+                    new Columna("direccion", Tipo.TEXT),
+                    new Columna("telefono", Tipo.TEXT),
+                    new Columna("notas", Tipo.TEXT))),
+            new Tabla("producto", false, List.of(
+                    new Columna("id", Tipo.INT4),
+                    new Columna("nombre", Tipo.TEXT),
+                    new Columna("precio", Tipo.FLOAT8))),
+            new Tabla("pedido", false, List.of(
+                    new Columna("id", Tipo.INT4),
+                    new Columna("cliente_id", Tipo.INT4),
+                    new Columna("fecha", Tipo.DATE))),
+            new Tabla("detalle_pedido", false, List.of(
+                    new Columna("pedido_id", Tipo.INT4),
+                    new Columna("producto_id", Tipo.INT4),
+                    new Columna("cantidad", Tipo.INT4),
+                    new Columna("precio_unit", Tipo.FLOAT8))),
+            new Tabla("pedido_archivo", false, List.of(
+                    new Columna("id", Tipo.INT4),
+                    new Columna("cliente_id", Tipo.INT4),
+                    new Columna("fecha", Tipo.DATE))),
+            new Tabla("detalle_pedido_archivo", false, List.of(
+                    new Columna("pedido_id", Tipo.INT4),
+                    new Columna("producto_id", Tipo.INT4),
+                    new Columna("cantidad", Tipo.INT4),
+                    new Columna("precio_unit", Tipo.FLOAT8)))
+    );
+
+    private FormatoColumnar() {}
+
+    static Tabla tabla(String nombre) {
+        for (Tabla t : TABLAS) {
+            if (t.nombre().equals(nombre)) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("Tabla desconocida en el fichero: " + nombre);
+    }
+
+    // =========================================================================
+    //  COLUMNA DE UN BLOQUE EN MEMORIA
+    // =========================================================================
+
+    /** Valores de una columna para un bloque. INT4 y DATE (días desde 1970) usan 'enteros'. */
+    static final class Vector {
+        final Tipo tipo;
+        final boolean[] nulos;
+        final int[] enteros;
+        final double[] reales;
+        final String[] textos;
+        int filas;
+
+        Vector(Tipo tipo, int capacidad) {
+            this.tipo = tipo;
+            this.nulos = new boolean[capacidad];
+            this.enteros = tipo == Tipo.INT4 || tipo == Tipo.DATE ? new int[capacidad] : null;
+            this.reales = tipo == Tipo.FLOAT8 ? new double[capacidad] : null;
+            this.textos = tipo == Tipo.TEXT ? new String[capacidad] : null;
+        }
+    }
+
+    static byte[] codificar(Vector v) {
+        Salida out = new Salida(v.filas * 4 + 16);
+
+        boolean hayNulos = false;
+        for (int i = 0; i < v.filas && !hayNulos; i++) {
+            hayNulos = v.nulos[i];
+        }
+        out.put(hayNulos ? 1 : 0);
+        if (hayNulos) {
+            byte[] mapa = new byte[(v.filas + 7) / 8];
+            for (int i = 0; i < v.filas; i++) {
+                if (v.nulos[i]) mapa[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+            out.put(mapa, 0, mapa.length);
+        }
+
+        switch (v.tipo) {
+            case INT4, DATE -> {
+                int anterior = 0;
+                for (int i = 0; i < v.filas; i++) {
+                    if (v.nulos[i]) continue;
+                    out.varint(zigzag(v.enteros[i] - anterior));
+                    anterior = v.enteros[i];
+                }
+            }
+            case FLOAT8 -> {
+                for (int i = 0; i < v.filas; i++) {
+                    if (!v.nulos[i]) out.int64(Double.doubleToRawLongBits(v.reales[i]));
+                }
+            }
+            case TEXT -> codificarTextos(v, out);
+        }
+        return out.bytes();
+    }
+
+    private static void codificarTextos(Vector v, Salida out) {
+        Map<String, Integer> dic = new HashMap<>();
+        int limite = Math.max(1, v.filas / 2);
+        for (int i = 0; i < v.filas && dic.size() <= limite; i++) {
+            if (!v.nulos[i]) dic.putIfAbsent(v.textos[i], dic.size());
+        }
+
+        if (dic.size() <= limite) {
+            out.put(1);
+            String[] valores = new String[dic.size()];
+            dic.forEach((s, c) -> valores[c] = s);
+            out.varint(valores.length);
+            for (String s : valores) out.texto(s);
+            for (int i = 0; i < v.filas; i++) {
+                if (!v.nulos[i]) out.varint(dic.get(v.textos[i]));
+            }
+        } else {
+            out.put(0);
+            for (int i = 0; i < v.filas; i++) {
+                if (!v.nulos[i]) out.texto(v.textos[i]);
+            }
+        }
+    }
+
+    static Vector decodificar(Tipo tipo, int filas, byte[] datos) {
+        Vector v = new Vector(tipo, filas);
+        v.filas = filas;
+        Entrada in = new Entrada(datos);
+
+        if (in.get() == 1) {
+            int bytesMapa = (filas + 7) / 8;
+            for (int i = 0; i < filas; i++) {
+                v.nulos[i] = (datos[in.pos + (i >>> 3)] & (1 << (i & 7))) != 0;
+            }
+            in.pos += bytesMapa;
+        }
+
+        switch (tipo) {
+            case INT4, DATE -> {
+                int anterior = 0;
+                for (int i = 0; i < filas; i++) {
+                    if (v.nulos[i]) continue;
+                    anterior += unzigzag(in.varint());
+                    v.enteros[i] = anterior;
+                }
+            }
+            case FLOAT8 -> {
+                for (int i = 0; i < filas; i++) {
+                    if (!v.nulos[i]) v.reales[i] = Double.longBitsToDouble(in.int64());
+                }
+            }
+            case TEXT -> {
+                if (in.get() == 1) {
+                    String[] valores = new String[in.varint()];
+                    for (int k = 0; k < valores.length; k++) valores[k] = in.texto();
+                    for (int i = 0; i < filas; i++) {
+                        if (!v.nulos[i]) v.textos[i] = valores[in.varint()];
+                    }
+                } else {
+                    for (int i = 0; i < filas; i++) {
+                        if (!v.nulos[i]) v.textos[i] = in.texto();
+                    }
+                }
+            }
+        }
+        return v;
+    }
+
+    private static int zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static int unzigzag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    // =========================================================================
+    //  BUFFERS DE BYTES
+    // =========================================================================
+
+    /** Buffer de escritura que crece según haga falta. */
+    static final class Salida {
+        byte[] buf;
+        int pos;
+
+        Salida(int capacidad) {
+            buf = new byte[Math.max(16, capacidad)];
+        }
+
+        private void asegurar(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        void put(int b) {
+            asegurar(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void put(byte[] b, int off, int len) {
+            asegurar(len);
+            System.arraycopy(b, off, buf, pos, len);
+            pos += len;
+        }
+
+        void int16(int v) {
+            asegurar(2);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void int32(int v) {
+            asegurar(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void int64(long v) {
+            int32((int) (v >>> 32));
+            int32((int) v);
+        }
+
+        void varint(int v) {
+            asegurar(5);
+            while ((v & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void texto(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varint(b.length);
+            put(b, 0, b.length);
+        }
+
+        byte[] bytes() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        void reiniciar() {
+            pos = 0;
+        }
+    }
+
+    /** Lector secuencial sobre un byte[]. */
+    static final class Entrada {
+        final byte[] buf;
+        int pos;
+
+        Entrada(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int get() {
+            return buf[pos++] & 0xFF;
+        }
+
+        long int64() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (buf[pos++] & 0xFF);
+            }
+            return v;
+        }
+
+        int varint() {
+            int v = 0, desp = 0, b;
+            do {
+                b = buf[pos++];
+                v |= (b & 0x7F) << desp;
+                desp += 7;
+            } while ((b & 0x80) != 0);
+            return v;
+        }
+
+        String texto() {
+            int n = varint();
+            String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package services;
+
+import dao.ClienteDAO;
+import dao.DetalleClienteDAO;
+import dao.PedidoDAO;
+import dao.ProductoDAO;
+import model.Cliente;
+import model.DetalleCliente;
+import model.DetallePedido;
+import model.Pedido;
+import model.Producto;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generador de datos sintéticos realistas y reproducibles.
+ *
+ * Con la misma semilla y los mismos tamaños genera exactamente los mismos
+ * clientes, detalles, productos y pedidos. Incluye repeticiones típicas de
+ * datos reales: nombres y apellidos frecuentes, acentos, dominios de email
+ * comunes y unos pocos clientes que concentran muchos pedidos.
+ */
+public class GeneradorDatos {
+
+    private static final String[] NOMBRES = {
+            "María", "José", "Antonio", "Carmen", "Manuel", "Ana", "Francisco", "Laura",
+            "David", "Isabel", "Javier", "Lucía", "Sergio", "Marta", "Pablo", "Cristina",
+            "Jesús", "Elena", "Daniel", "Raquel", "Andrea", "Roberto", "Sofía", "Álvaro",
+            "Nuria", "Iñaki", "Begoña", "Óscar", "Rocío", "Ángel"
+    };
+
+    private static final String[] APELLIDOS = {
+            "García", "Rodríguez", "González", "Fernández", "López", "Martínez", "Sánchez",
+            "Pérez", "Gómez", "Martín", "Jiménez", "Ruiz", "Hernández", "Díaz", "Moreno",
+            "Muñoz", "Álvarez", "Romero", "Alonso", "Gutiérrez", "Navarro", "Torres",
+            "Domínguez", "Vázquez", "Ramos", "Gil", "Ramírez", "Serrano", "Blanco", "Valenti"
+    };
+
+    private static final String[] DOMINIOS = {
+            "gmail.com", "hotmail.com", "yahoo.es", "outlook.com", "telefonica.net", "lampreas.es"
+    };
+
+    private static final String[] CALLES = {
+            "Calle Mayor", "Avenida de la Constitución", "Calle Real", "Plaza de España",
+            "Calle del Sol", "Avenida de Andalucía", "Calle San Juan", "Paseo de la Castellana",
+            "Calle Nueva", "Ronda de Valencia"
+    };
+
+    private static final String[] CIUDADES = {
+            "Madrid", "Barcelona", "Valencia", "Sevilla", "Zaragoza", "Málaga", "Murcia",
+            "Bilbao", "A Coruña", "Valladolid"
+    };
+
+    private static final String[] NOTAS = {
+            "Cliente preferente", "Entregar por la mañana", "Llamar antes de ir",
+            "Pago a 30 días", "Factura con IVA desglosado", "Portero automático roto"
+    };
+
+    private static final String[] PRODUCTOS = {
+            "Lamprea", "Conserva", "Empanada", "Vino", "Aceite", "Queso", "Pimentón", "Miel"
+    };
+
+    private static final String[] VARIANTES = {
+            "clásica", "ahumada", "ecológica", "de temporada", "gran reserva", "en lata", "artesana"
+    };
+
+    private final Random rnd;
+
+    public GeneradorDatos(long semilla) {
+        this.rnd = new Random(semilla);
+    }
+
+    // =========================================================================
+    //  ENTIDADES SUELTAS
+    // =========================================================================
+
+    public Cliente cliente(int id) {
+        String nombre = elegir(NOMBRES);
+        String ap1 = elegir(APELLIDOS);
+        String ap2 = elegir(APELLIDOS);
+
+        String usuario = sinAcentos(nombre + "." + ap1).toLowerCase().replace(' ', '.');
+        if (rnd.nextInt(3) == 0) {
+            usuario += rnd.nextInt(100);
+        }
+        return new Cliente(id, nombre + " " + ap1 + " " + ap2, usuario + "@" + elegir(DOMINIOS));
+    }
+
+    public DetalleCliente detalle(int id) {
+        String direccion = elegir(CALLES) + ", " + (1 + rnd.nextInt(150)) + ", " + elegir(CIUDADES);
+        String telefono = (rnd.nextBoolean() ? "6" : "9") + String.format("%08d", rnd.nextInt(100_000_000));
+        String notas = rnd.nextInt(4) == 0 ? elegir(NOTAS) : null;
+        return new DetalleCliente(id, direccion, telefono, notas);
+    }
+
+    public Producto producto(int id) {
+        double precio = Math.round((1 + rnd.nextDouble() * 99) * 100) / 100.0;
+        return new Producto(id, elegir(PRODUCTOS) + " " + elegir(VARIANTES), precio);
+    }
+
+    /**
+     * Pedido de 1 a 5 líneas. Los clientes con id bajo compran mucho más
+     * (distribución sesgada), como pasa con los clientes habituales.
+     *
+     * @param precios precio de cada producto, indexado por (id producto - primerProducto)
+     */
+    public Pedido pedido(int id, int primerCliente, int numClientes,
+                         int primerProducto, double[] precios, LocalDate hoy) {
+        int cliente = primerCliente + (int) (numClientes * Math.pow(rnd.nextDouble(), 3));
+        LocalDate fecha = hoy.minusDays(rnd.nextInt(3 * 365));
+        Pedido p = new Pedido(id, cliente, fecha);
+
+        int lineas = 1 + rnd.nextInt(5);
+        int producto = rnd.nextInt(precios.length);
+        for (int i = 0; i < lineas && i < precios.length; i++) {
+            int idx = (producto + i) % precios.length;
+            p.addLinea(new DetallePedido(id, primerProducto + idx, 1 + rnd.nextInt(10), precios[idx]));
+        }
+        return p;
+    }
+
+    /** Fragmento de texto para búsquedas (apellido, dominio o parte de nombre). */
+    public String filtroBusqueda() {
+        return switch (rnd.nextInt(3)) {
+            case 0 -> elegir(APELLIDOS);
+            case 1 -> elegir(DOMINIOS);
+            default -> elegir(NOMBRES).substring(0, 3);
+        };
+    }
+
+    // =========================================================================
+    //  CARGA MASIVA
+    // =========================================================================
+
+    /**
+     * Inserta en la BD un conjunto completo de datos, por lotes.
+     * Los ids empiezan a continuación del mayor id existente en cada tabla.
+     */
+    public void cargar(int numClientes, int numProductos, int numPedidos, int lote) throws SQLException {
+        ClienteDAO clienteDAO = new ClienteDAO();
+        DetalleClienteDAO detalleDAO = new DetalleClienteDAO();
+        ProductoDAO productoDAO = new ProductoDAO();
+        PedidoDAO pedidoDAO = new PedidoDAO();
+
+        int primerCliente = clienteDAO.maxId() + 1;
+        List<Cliente> clientes = new ArrayList<>(lote);
+        List<DetalleCliente> detalles = new ArrayList<>(lote);
+        for (int i = 0; i < numClientes; i++) {
+            int id = primerCliente + i;
+            clientes.add(cliente(id));
+            if (rnd.nextInt(10) < 8) {
+                detalles.add(detalle(id));   // ~80% de clientes con detalle
+            }
+            if (clientes.size() == lote || i == numClientes - 1) {
+                clienteDAO.insertBatch(clientes);
+                detalleDAO.insertBatch(detalles);
+                clientes.clear();
+                detalles.clear();
+                progreso("clientes", i + 1, numClientes);
+            }
+        }
+
+        int primerProducto = productoDAO.maxId() + 1;
+        double[] precios = new double[numProductos];
+        List<Producto> productos = new ArrayList<>(numProductos);
+        for (int i = 0; i < numProductos; i++) {
+            Producto p = producto(primerProducto + i);
+            precios[i] = p.getPrecio();
+            productos.add(p);
+        }
+        if (!productos.isEmpty()) {
+            productoDAO.insertBatch(productos);
+        }
+        progreso("productos", numProductos, numProductos);
+
+        if (numClientes == 0 || numProductos == 0) {
+            return;
+        }
+        int primerPedido = pedidoDAO.maxId() + 1;
+        LocalDate hoy = LocalDate.now();
+        List<Pedido> pedidos = new ArrayList<>(lote);
+        for (int i = 0; i < numPedidos; i++) {
+            pedidos.add(pedido(primerPedido + i, primerCliente, numClientes, primerProducto, precios, hoy));
+            if (pedidos.size() == lote || i == numPedidos - 1) {
+                pedidoDAO.insertBatch(pedidos);
+                pedidos.clear();
+                progreso("pedidos", i + 1, numPedidos);
+            }
+        }
+    }
+
+    private static void progreso(String que, int hechos, int total) {
+        if (hechos == total || hechos % 50_000 < 1_000) {
+            System.out.printf("  %s: %d / %d%n", que, hechos, total);
+        }
+    }
+
+    private String elegir(String[] opciones) {
+        return opciones[rnd.nextInt(opciones.length)];
+    }
+
+    private static String sinAcentos(String s) {
+        return Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    }
+}
@@ -0,0 +1,329 @@
+package services;
+
+import db.Db;
+import db.Shards;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import services.FormatoColumnar.Columna;
+import services.FormatoColumnar.Salida;
+import services.FormatoColumnar.Tabla;
+import services.FormatoColumnar.Tipo;
+import services.FormatoColumnar.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Importa un fichero de {@link ExportacionColumnar} en la BD actual.
+ *
+ * Los bloques comprimidos se leen mapeando el fichero (FileChannel.map), sin
+ * copiarlos al heap, y cada bloque se convierte directamente en filas del
+ * formato binario de COPY (COPY ... FROM STDIN WITH (FORMAT binary)).
+ * Las tablas repartidas por shards se envían a un COPY por shard.
+ *
+ * Cada BD de destino (el primario y cada shard) recibe todo en una sola
+ * transacción: el TRUNCATE y los COPY de todas las tablas. Si algo falla a
+ * medias no queda ninguna tabla cargada a medias ni vaciada sin recargar.
+ * Entre varias BD no es atómico: si falla el commit de una, las anteriores
+ * ya están confirmadas.
+ */
+public class ImportacionColumnar {
+
+    /** Cabecera fija del formato binario de COPY de PostgreSQL. */
+    private static final byte[] FIRMA_COPY = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    /** Días entre 1970-01-01 (epochDay) y 2000-01-01 (origen de DATE en PostgreSQL). */
+    private static final int DIAS_2000 = 10_957;
+
+    private final Inflater inflater = new Inflater();
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel ch;
+    private long pos;
+
+    /**
+     * @param vaciar true para hacer TRUNCATE de las tablas antes de cargar
+     * @return número de filas importadas
+     */
+    public long importar(Path fichero, boolean vaciar) throws IOException, SQLException {
+        long total = 0;
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ);
+             Destinos bd = new Destinos()) {
+            ch = canal;
+            pos = 0;
+            if (leerInt() != FormatoColumnar.MAGIC || leerInt() != FormatoColumnar.VERSION) {
+                throw new IOException("No es un fichero columnar de LampreasVioleta: " + fichero);
+            }
+            if (vaciar) {
+                vaciarTablas(bd);
+            }
+
+            while (leerByte() == 'T') {
+                total += importarTabla(bd);
+            }
+            bd.confirmar();
+        } finally {
+            inflater.end();
+        }
+        return total;
+    }
+
+    private long importarTabla(Destinos bd) throws IOException, SQLException {
+        String nombre = leerTexto();
+        int nCols = leerByte();
+        List<Columna> columnas = new ArrayList<>(nCols);
+        for (int c = 0; c < nCols; c++) {
+            String col = leerTexto();
+            columnas.add(new Columna(col, Tipo.values()[leerByte()]));
+        }
+        // Se usan las columnas del fichero; del catálogo solo si la tabla va por shards
+        Tabla tabla = new Tabla(nombre, FormatoColumnar.tabla(nombre).porShards(), columnas);
+
+        String sql = "COPY " + tabla.nombre() + " (" + tabla.listaColumnas() + ") FROM STDIN WITH (FORMAT binary)";
+        boolean porShards = tabla.porShards() && Shards.activo();
+        int destinos = porShards ? Shards.numShards() : 1;
+
+        CopyIn[] copias = new CopyIn[destinos];
+        Salida[] salidas = new Salida[destinos];
+        long filas = 0;
+        try {
+            for (int d = 0; d < destinos; d++) {
+                Connection con = porShards ? bd.shard(d) : bd.primario();
+                copias[d] = con.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+                salidas[d] = new Salida(1 << 20);
+                salidas[d].put(FIRMA_COPY, 0, FIRMA_COPY.length);
+                salidas[d].int32(0); // flags
+                salidas[d].int32(0); // longitud de la extensión de cabecera
+            }
+
+            int n;
+            while ((n = leerInt()) > 0) {
+                Vector[] bloque = new Vector[nCols];
+                for (int c = 0; c < nCols; c++) {
+                    bloque[c] = FormatoColumnar.decodificar(columnas.get(c).tipo(), n, leerColumna());
+                }
+                for (int i = 0; i < n; i++) {
+                    int d = destinos == 1 ? 0 : Shards.shardDe(bloque[0].enteros[i]);
+                    escribirFila(salidas[d], bloque, i);
+                }
+                for (int d = 0; d < destinos; d++) {
+                    enviar(copias[d], salidas[d]);
+                }
+                filas += n;
+            }
+
+            for (int d = 0; d < destinos; d++) {
+                salidas[d].int16(-1); // fin del COPY binario
+                enviar(copias[d], salidas[d]);
+                copias[d].endCopy();
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            for (CopyIn c : copias) {
+                if (c != null) {
+                    try { c.cancelCopy(); } catch (SQLException ignorada) { }
+                }
+            }
+            throw e;
+        }
+        return filas;
+    }
+
+    /** Una tupla en formato binario de COPY: [nº campos] y por campo [longitud|-1][bytes]. */
+    private static void escribirFila(Salida out, Vector[] bloque, int i) {
+        out.int16(bloque.length);
+        for (Vector v : bloque) {
+            if (v.nulos[i]) {
+                out.int32(-1);
+                continue;
+            }
+            switch (v.tipo) {
+                case INT4 -> { out.int32(4); out.int32(v.enteros[i]); }
+                case DATE -> { out.int32(4); out.int32(v.enteros[i] - DIAS_2000); }
+                case FLOAT8 -> { out.int32(8); out.int64(Double.doubleToRawLongBits(v.reales[i])); }
+                case TEXT -> {
+                    byte[] b = v.textos[i].getBytes(StandardCharsets.UTF_8);
+                    out.int32(b.length);
+                    out.put(b, 0, b.length);
+                }
+            }
+        }
+    }
+
+    private static void enviar(CopyIn copia, Salida out) throws SQLException {
+        if (out.pos > 0) {
+            copia.writeToCopy(out.buf, 0, out.pos);
+            out.reiniciar();
+        }
+    }
+
+    private static void vaciarTablas(Destinos bd) throws SQLException {
+        StringBuilder tablas = new StringBuilder();
+        for (Tabla t : FormatoColumnar.TABLAS) {
+            if (!tablas.isEmpty()) tablas.append(", ");
+            tablas.append(t.nombre());
+        }
+        String sql = "TRUNCATE " + tablas + " CASCADE";
+
+        if (Shards.activo()) {
+            for (int s = 0; s < Shards.numShards(); s++) {
+                try (Statement st = bd.shard(s).createStatement()) {
+                    st.execute(sql);
+                }
+            }
+        }
+        try (Statement st = bd.primario().createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    /**
+     * Conexiones a las BD de destino, abiertas al usarse por primera vez y sin
+     * autocommit: una transacción por BD para toda la importación. Al cerrar
+     * sin {@link #confirmar()} se deshace todo.
+     */
+    private static final class Destinos implements AutoCloseable {
+
+        private Connection primario;
+        private final Connection[] shards = new Connection[Shards.numShards()];
+        private boolean confirmado;
+
+        Connection primario() throws SQLException {
+            if (primario == null) {
+                primario = abrir(Db.getConnection());
+            }
+            return primario;
+        }
+
+        Connection shard(int s) throws SQLException {
+            if (shards[s] == null) {
+                shards[s] = abrir(Shards.getConnection(s));
+            }
+            return shards[s];
+        }
+
+        private static Connection abrir(Connection con) throws SQLException {
+            try {
+                con.setAutoCommit(false);
+                return con;
+            } catch (SQLException e) {
+                con.close();
+                throw e;
+            }
+        }
+
+        void confirmar() throws SQLException {
+            for (Connection con : shards) {
+                if (con != null) con.commit();
+            }
+            if (primario != null) primario.commit();
+            confirmado = true;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            SQLException error = null;
+            for (Connection con : todas()) {
+                try {
+                    if (!confirmado) con.rollback();
+                } catch (SQLException e) {
+                    error = e;
+                } finally {
+                    try { con.close(); } catch (SQLException e) { error = error != null ? error : e; }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        private List<Connection> todas() {
+            List<Connection> out = new ArrayList<>();
+            for (Connection con : shards) {
+                if (con != null) out.add(con);
+            }
+            if (primario != null) out.add(primario);
+            return out;
+        }
+    }
+
+    // =========================================================================
+    //  LECTURA DEL FICHERO
+    // =========================================================================
+
+    /** Lee una columna comprimida: comprueba el crc sobre el mapeo y descomprime. */
+    private byte[] leerColumna() throws IOException {
+        int crudo = leerInt();
+        int comprimido = leerInt();
+        int crcEsperado = leerInt();
+
+        MappedByteBuffer datos = ch.map(FileChannel.MapMode.READ_ONLY, pos, comprimido);
+        pos += comprimido;
+
+        crc.reset();
+        crc.update(datos.duplicate());
+        if ((int) crc.getValue() != crcEsperado) {
+            throw new IOException("Checksum incorrecto en el bloque que termina en la posición " + pos);
+        }
+
+        byte[] out = new byte[crudo];
+        inflater.reset();
+        inflater.setInput(datos);
+        try {
+            int n = 0;
+            while (n < crudo && !inflater.finished()) {
+                int leidos = inflater.inflate(out, n, crudo - n);
+                if (leidos == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    // Se acabó la entrada sin llegar al tamaño anunciado: no avanzaría nunca
+                    throw new IOException("Bloque comprimido truncado en la posición " + pos);
+                }
+                n += leidos;
+            }
+            if (n != crudo) {
+                throw new IOException("El bloque que termina en la posición " + pos
+                        + " tiene " + n + " bytes en lugar de " + crudo);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque comprimido corrupto", e);
+        }
+        return out;
+    }
+
+    private int leerByte() throws IOException {
+        return leer(1).get() & 0xFF;
+    }
+
+    private int leerInt() throws IOException {
+        return leer(4).getInt();
+    }
+
+    private String leerTexto() throws IOException {
+        int n = leer(2).getShort() & 0xFFFF;
+        byte[] b = new byte[n];
+        leer(n).get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer leer(int n) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(n);
+        while (b.hasRemaining()) {
+            if (ch.read(b, pos + b.position()) < 0) {
+                throw new IOException("Fichero columnar truncado");
+            }
+        }
+        pos += n;
+        return b.flip();
+    }
+}
@@ -0,0 +1,259 @@
+package services;
+
+import dao.RfmDAO;
+import db.Carga;
+import db.Db;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Segmentación de clientes por RFM (recencia, frecuencia e importe de sus pedidos).
+ *
+ * Los agregados de cada cliente (día de la última compra, nº de pedidos e
+ * importe total) viven en arrays de primitivos indexados por id de cliente.
+ * No se recorre el histórico de pedidos cada vez:
+ *
+ *  - Un trigger encola en rfm_pendiente cada pedido que se inserta (lo
+ *    inserte quien lo inserte). {@link #actualizar()} consume la cola: la BD
+ *    suma los pedidos nuevos a rfm_cliente en la misma sentencia que los saca
+ *    y devuelve los totales de los clientes tocados, que se copian aquí.
+ *  - {@link #puntuar(LocalDate)} da a cada cliente su cuantil (1..5) en cada
+ *    dimensión ordenando las tres columnas en paralelo, y su segmento.
+ *  - {@link #guardar()} escribe puntuaciones y segmentos en rfm_cliente.
+ *
+ * {@link #recalcular()} rehace los agregados con todo el histórico: solo hace
+ * falta la primera vez o tras cargar pedidos sin pasar por el trigger.
+ *
+ * Los métodos están sincronizados: una instancia se puede compartir entre hilos.
+ */
+public class SegmentacionRFM {
+
+    /** Número de cuantiles: las puntuaciones van de 1 a CUANTILES. */
+    public static final int CUANTILES = 5;
+
+    /** Pedidos que se sacan de la cola por sentencia. */
+    private static final int LOTE_COLA = 50_000;
+
+    /** Segmentos por código (0 = sin pedidos). */
+    private static final String[] SEGMENTOS = {
+            null, "Campeones", "Leales", "Nuevos", "Necesitan atención",
+            "No se pueden perder", "En riesgo", "Perdidos"
+    };
+
+    private final RfmDAO dao = new RfmDAO();
+
+    // Posición = id de cliente. frecuencia 0 = cliente sin pedidos.
+    private int[] ultimaCompra = new int[0];
+    private int[] frecuencia = new int[0];
+    private double[] importe = new double[0];
+    private byte[] r = new byte[0];
+    private byte[] f = new byte[0];
+    private byte[] m = new byte[0];
+    private byte[] segmento = new byte[0];
+
+    /** Carga los agregados guardados en rfm_cliente (sin puntuar). */
+    public synchronized void cargar() throws SQLException {
+        reiniciar();
+        try (Carga.Ambito a = Db.usar(Carga.INFORME)) {
+            dao.leerAgregados(this::fijar);
+        }
+    }
+
+    /**
+     * Suma los pedidos insertados desde la última llamada. Devuelve cuántos
+     * clientes han cambiado (las puntuaciones no se tocan hasta puntuar()).
+     */
+    public synchronized int actualizar() throws SQLException {
+        int clientes = 0;
+        try (Carga.Ambito a = Db.usar(Carga.LOTE)) {
+            int n;
+            while ((n = dao.consumirPendientes(LOTE_COLA, this::fijar)) > 0) {
+                clientes += n;
+            }
+        }
+        return clientes;
+    }
+
+    /** Recalcula los agregados con todo el histórico de pedidos y los vuelve a cargar. */
+    public synchronized void recalcular() throws SQLException {
+        try (Carga.Ambito a = Db.usar(Carga.LOTE)) {
+            dao.recalcular();
+        }
+        cargar();
+    }
+
+    /**
+     * Calcula las puntuaciones R, F y M (cuantiles respecto al resto de
+     * clientes con pedidos) y el segmento de cada cliente, con la recencia
+     * medida en días hasta {@code hoy}. Devuelve cuántos clientes ha puntuado.
+     */
+    public synchronized int puntuar(LocalDate hoy) {
+        int[] ids = clientesConPedidos();
+        int n = ids.length;
+        int hoyDia = (int) hoy.toEpochDay();
+
+        int[] dias = new int[n];
+        int[] pedidos = new int[n];
+        double[] importes = new double[n];
+        for (int i = 0; i < n; i++) {
+            int id = ids[i];
+            dias[i] = hoyDia - ultimaCompra[id];
+            pedidos[i] = frecuencia[id];
+            importes[i] = importe[id];
+        }
+
+        int[] diasOrdenados = dias.clone();
+        int[] pedidosOrdenados = pedidos.clone();
+        double[] importesOrdenados = importes.clone();
+        Arrays.parallelSort(diasOrdenados);
+        Arrays.parallelSort(pedidosOrdenados);
+        Arrays.parallelSort(importesOrdenados);
+
+        // Cada cliente escribe solo en su posición: se reparte sin sincronizar
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int id = ids[i];
+            // Menos días desde la última compra = mejor recencia
+            int rc = CUANTILES + 1 - cuantil(primeroNoMenor(diasOrdenados, dias[i]), n);
+            int fc = cuantil(primeroNoMenor(pedidosOrdenados, pedidos[i]), n);
+            int mc = cuantil(primeroNoMenor(importesOrdenados, importes[i]), n);
+            r[id] = (byte) rc;
+            f[id] = (byte) fc;
+            m[id] = (byte) mc;
+            segmento[id] = clasificar(rc, fc);
+        });
+        return n;
+    }
+
+    /** Guarda en rfm_cliente las puntuaciones y segmentos calculados. */
+    public synchronized void guardar() throws SQLException {
+        int[] ids = clientesConPedidos();
+        int n = ids.length;
+        byte[] vR = new byte[n];
+        byte[] vF = new byte[n];
+        byte[] vM = new byte[n];
+        String[] vSeg = new String[n];
+        for (int i = 0; i < n; i++) {
+            int id = ids[i];
+            vR[i] = r[id];
+            vF[i] = f[id];
+            vM[i] = m[id];
+            vSeg[i] = SEGMENTOS[segmento[id]];
+        }
+        try (Carga.Ambito a = Db.usar(Carga.LOTE)) {
+            dao.guardarPuntuaciones(ids, vR, vF, vM, vSeg, n);
+        }
+    }
+
+    // =========================================================================
+    //  CONSULTA
+    // =========================================================================
+
+    /** Puntuaciones {R, F, M} del cliente, o null si no tiene pedidos o no se ha puntuado. */
+    public synchronized int[] puntuaciones(int clienteId) {
+        if (clienteId < 0 || clienteId >= r.length || r[clienteId] == 0) {
+            return null;
+        }
+        return new int[]{r[clienteId], f[clienteId], m[clienteId]};
+    }
+
+    /** Segmento del cliente, o null si no tiene pedidos o no se ha puntuado. */
+    public synchronized String segmento(int clienteId) {
+        return clienteId >= 0 && clienteId < segmento.length ? SEGMENTOS[segmento[clienteId]] : null;
+    }
+
+    /** Nº de clientes de cada segmento, en el orden de los segmentos. */
+    public synchronized Map<String, Integer> resumen() {
+        int[] cuenta = new int[SEGMENTOS.length];
+        for (byte s : segmento) {
+            cuenta[s]++;
+        }
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (int s = 1; s < SEGMENTOS.length; s++) {
+            out.put(SEGMENTOS[s], cuenta[s]);
+        }
+        return out;
+    }
+
+    // =========================================================================
+    //  AUXILIARES
+    // =========================================================================
+
+    /** Clasificación clásica por recencia y frecuencia (el importe solo matiza). */
+    private static byte clasificar(int r, int f) {
+        if (r >= 4 && f >= 4) return 1;   // Campeones
+        if (r >= 3 && f >= 3) return 2;   // Leales
+        if (r >= 4) return 3;             // Nuevos
+        if (r == 3) return 4;             // Necesitan atención
+        if (f >= 4) return 5;             // No se pueden perder
+        if (f >= 2 || r == 2) return 6;   // En riesgo
+        return 7;                         // Perdidos
+    }
+
+    /** Cuantil (1..CUANTILES) de la posición dada en una columna ordenada de n valores. */
+    private static int cuantil(int posicion, int n) {
+        return 1 + (int) ((long) posicion * CUANTILES / n);
+    }
+
+    /** Primera posición con valor >= v (los empates comparten cuantil). */
+    private static int primeroNoMenor(int[] ordenados, int v) {
+        int lo = 0;
+        int hi = ordenados.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ordenados[mid] < v) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int primeroNoMenor(double[] ordenados, double v) {
+        int lo = 0;
+        int hi = ordenados.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ordenados[mid] < v) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private int[] clientesConPedidos() {
+        return IntStream.range(0, frecuencia.length).filter(id -> frecuencia[id] > 0).toArray();
+    }
+
+    /** Copia los totales de un cliente (los entrega el DAO). */
+    private void fijar(int clienteId, int ultimaCompra, int frecuencia, double importe) {
+        asegurar(clienteId);
+        this.ultimaCompra[clienteId] = ultimaCompra;
+        this.frecuencia[clienteId] = frecuencia;
+        this.importe[clienteId] = importe;
+    }
+
+    /** Agranda los arrays (x1.5) para que quepa el id. */
+    private void asegurar(int clienteId) {
+        if (clienteId < frecuencia.length) {
+            return;
+        }
+        int capacidad = Math.max(clienteId + 1, frecuencia.length + (frecuencia.length >> 1));
+        ultimaCompra = Arrays.copyOf(ultimaCompra, capacidad);
+        frecuencia = Arrays.copyOf(frecuencia, capacidad);
+        importe = Arrays.copyOf(importe, capacidad);
+        r = Arrays.copyOf(r, capacidad);
+        f = Arrays.copyOf(f, capacidad);
+        m = Arrays.copyOf(m, capacidad);
+        segmento = Arrays.copyOf(segmento, capacidad);
+    }
+
+    private void reiniciar() {
+        ultimaCompra = new int[0];
+        frecuencia = new int[0];
+        importe = new double[0];
+        r = new byte[0];
+        f = new byte[0];
+        m = new byte[0];
+        segmento = new byte[0];
+    }
+}